@@ -0,0 +1,379 @@
+package org.example.solid;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// a job for a device: something that may fail the way Printer.Print and IScanner.Scan do
+interface DeviceJob {
+    void run(Document d) throws Exception;
+}
+
+// starts device worker threads: virtual threads where the runtime has them (looked up
+// reflectively, so this still compiles and runs on older releases), platform threads otherwise
+final class DeviceThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null, unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+            ofVirtual.invoke(null); // throws if virtual threads are a disabled preview feature
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        UNSTARTED = unstarted;
+    }
+
+    private DeviceThreads() {
+    }
+
+    public static boolean virtual() {
+        return OF_VIRTUAL != null;
+    }
+
+    public static Thread start(Runnable task, String name) {
+        Thread thread = null;
+        if (OF_VIRTUAL != null) {
+            try {
+                thread = (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), task);
+            } catch (ReflectiveOperationException e) {
+                thread = null;
+            }
+        }
+        if (thread == null) {
+            thread = new Thread(task);
+            thread.setDaemon(true);
+        }
+        thread.setName(name);
+        thread.start();
+        return thread;
+    }
+}
+
+// queue depth and latency (submit to completion) of the jobs of one device.
+// Percentiles are taken over the most recent SAMPLES jobs.
+class JobMetrics {
+    static final int SAMPLES = 8192;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long[] latencies = new long[SAMPLES]; // guarded by this
+    private long samples;                               // guarded by this
+    private int maxDepth;                               // guarded by this
+
+    void submitted(int depth) {
+        submitted.incrementAndGet();
+        synchronized (this) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+
+    void finished(long latencyNanos, boolean success) {
+        (success ? completed : failed).incrementAndGet();
+        synchronized (this) {
+            latencies[(int) (samples++ % SAMPLES)] = latencyNanos;
+        }
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    // latency in nanoseconds below which the given share (0..1) of recent jobs finished
+    public long percentile(double p) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(samples, SAMPLES));
+        }
+        if (sorted.length == 0)
+            return 0;
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d submitted, %d completed, %d failed, max depth %d, p50 %d us, p99 %d us",
+                getSubmitted(), getCompleted(), getFailed(), getMaxDepth(),
+                percentile(0.5) / 1000, percentile(0.99) / 1000);
+    }
+}
+
+// one device with a bounded queue in front of it and a single worker thread that runs the
+// queued jobs in order, so a slow device only holds up its own queue. When the queue is
+// full, submit blocks the caller (backpressure) and trySubmit gives up after a timeout.
+// Every accepted job's future completes: with the document, with what the device threw,
+// or with a RejectedExecutionException if the worker closed before getting to it.
+class DeviceWorker implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final class Job {
+        final Document document;
+        final DeviceJob action;
+        final CompletableFuture<Document> future = new CompletableFuture<>();
+        final long submitted = System.nanoTime();
+
+        Job(Document document, DeviceJob action) {
+            this.document = document;
+            this.action = action;
+        }
+    }
+
+    // queued by close() to wake up an idle worker; never run
+    private static final Job WAKE_UP = new Job(null, null);
+
+    private final String name;
+    private final BlockingQueue<Job> queue;
+    private final JobMetrics metrics = new JobMetrics();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public DeviceWorker(String name, int capacity) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = DeviceThreads.start(this::work, name);
+    }
+
+    /**
+     * Queues the job, waiting for room if the queue is full.
+     */
+    public CompletableFuture<Document> submit(Document d, DeviceJob action) throws InterruptedException {
+        Job job = accept(d, action);
+        queue.put(job);
+        queued(job);
+        return job.future;
+    }
+
+    /**
+     * Queues the job unless the queue stays full for longer than the timeout;
+     * then the future fails with a RejectedExecutionException.
+     */
+    public CompletableFuture<Document> trySubmit(Document d, DeviceJob action, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Job job = accept(d, action);
+        if (!queue.offer(job, timeout, unit))
+            job.future.completeExceptionally(new RejectedExecutionException(name + " queue is full"));
+        else
+            queued(job);
+        return job.future;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // stops taking jobs and waits for the queued ones to finish
+    @Override
+    public void close() {
+        running = false;
+        // an idle worker is waiting for a job; a busy one sees the flag once its queue is empty.
+        // No interrupt: it would also hit the device call in progress
+        queue.offer(WAKE_UP);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Job accept(Document d, DeviceJob action) {
+        if (!running)
+            throw new IllegalStateException(name + " is closed");
+        return new Job(d, action);
+    }
+
+    // the job is in the queue; if the worker may have stopped before seeing it, take it back.
+    // Either this or the worker's final drain gets a job that was queued too late
+    private void queued(Job job) {
+        if (!running && queue.remove(job)) {
+            job.future.completeExceptionally(new RejectedExecutionException(name + " is closed"));
+            return;
+        }
+        metrics.submitted(queue.size());
+    }
+
+    private void work() {
+        try {
+            while (running || !queue.isEmpty()) {
+                Job job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job != WAKE_UP)
+                    run(job);
+            }
+        } finally {
+            for (Job job; (job = queue.poll()) != null; ) {
+                if (job == WAKE_UP)
+                    continue;
+                job.future.completeExceptionally(new RejectedExecutionException(name + " is closed"));
+                metrics.finished(System.nanoTime() - job.submitted, false);
+            }
+        }
+    }
+
+    // whatever the device throws, Errors included, fails this job only
+    private void run(Job job) {
+        boolean success = false;
+        try {
+            job.action.run(job.document);
+            success = true;
+        } catch (Throwable e) {
+            job.future.completeExceptionally(e);
+        }
+        metrics.finished(System.nanoTime() - job.submitted, success);
+        if (success)
+            job.future.complete(job.document);
+    }
+}
+
+// MultiFunctionMachine with a job queue and a worker per device: printing and scanning run
+// at the same time and callers get futures instead of waiting for the device.
+class AsyncMultiFunctionMachine implements MultiFunctionDevice, AutoCloseable {
+    private final Printer printer;
+    private final IScanner scanner;
+    private final DeviceWorker printWorker;
+    private final DeviceWorker scanWorker;
+
+    public AsyncMultiFunctionMachine(Printer printer, IScanner scanner) {
+        this(printer, scanner, DeviceWorker.DEFAULT_CAPACITY);
+    }
+
+    public AsyncMultiFunctionMachine(Printer printer, IScanner scanner, int queueCapacity) {
+        this.printer = printer;
+        this.scanner = scanner;
+        this.printWorker = new DeviceWorker("printer", queueCapacity);
+        this.scanWorker = new DeviceWorker("scanner", queueCapacity);
+    }
+
+    public CompletableFuture<Document> printAsync(Document d) throws InterruptedException {
+        return printWorker.submit(d, printer::Print);
+    }
+
+    public CompletableFuture<Document> scanAsync(Document d) throws InterruptedException {
+        return scanWorker.submit(d, scanner::Scan);
+    }
+
+    public void Print(Document d) throws Exception {
+        await(printAsync(d));
+    }
+
+    public void Scan(Document d) throws Exception {
+        await(scanAsync(d));
+    }
+
+    public JobMetrics getPrintMetrics() {
+        return printWorker.getMetrics();
+    }
+
+    public JobMetrics getScanMetrics() {
+        return scanWorker.getMetrics();
+    }
+
+    public int getPrintQueueDepth() {
+        return printWorker.getQueueDepth();
+    }
+
+    public int getScanQueueDepth() {
+        return scanWorker.getQueueDepth();
+    }
+
+    @Override
+    public void close() {
+        printWorker.close();
+        scanWorker.close();
+    }
+
+    // rethrows what the device threw
+    private static void await(CompletableFuture<Document> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+}
+
+class AsyncMultiFunctionMachineDemo {
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Printer printer = d -> sleep(4);
+        IScanner scanner = d -> sleep(2);
+        int jobs = 200;
+
+        long start = System.nanoTime();
+        MultiFunctionMachine sync = new MultiFunctionMachine(printer, scanner);
+        for (int i = 0; i < jobs; i++) {
+            sync.Scan(new Document());
+            sync.Print(new Document());
+        }
+        System.out.printf("synchronous: %d scans and prints in %d ms%n", jobs, (System.nanoTime() - start) / 1_000_000);
+
+        System.out.println("virtual threads: " + DeviceThreads.virtual());
+        try (AsyncMultiFunctionMachine machine = new AsyncMultiFunctionMachine(printer, scanner, 16)) {
+            start = System.nanoTime();
+            CountDownLatch done = new CountDownLatch(jobs * 2);
+            for (int i = 0; i < jobs; i++) {
+                machine.scanAsync(new Document()).whenComplete((d, e) -> done.countDown());
+                machine.printAsync(new Document()).whenComplete((d, e) -> done.countDown());
+            }
+            long submitted = System.nanoTime() - start;
+            done.await();
+            System.out.printf("asynchronous: submitted in %d ms (held back by full queues), done in %d ms%n",
+                    submitted / 1_000_000, (System.nanoTime() - start) / 1_000_000);
+            System.out.println("printer: " + machine.getPrintMetrics());
+            System.out.println("scanner: " + machine.getScanMetrics());
+
+        }
+
+        try (AsyncMultiFunctionMachine broken = new AsyncMultiFunctionMachine(new Photocopier(), new Photocopier())) {
+            broken.printAsync(new Document()).join();
+        } catch (CompletionException e) {
+            System.out.println("a failing device fails the future: " + e.getCause());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// asynchronous batch lookups in front of a (possibly slow) RelationshipBrowser.
+// Every call turns into at most one batch query for the names that aren't already being
+// looked up; names that are in flight, from this call or an earlier one, share its result.
+class AsyncRelationshipBrowser {
+    private final RelationshipBrowser browser;
+    private final Executor executor;
+    private final Map<String, CompletableFuture<List<Person>>> inFlight = new ConcurrentHashMap<>();
+
+    public AsyncRelationshipBrowser(RelationshipBrowser browser, Executor executor) {
+        this.browser = browser;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<List<Person>> findAllChildrenOfAsync(String name) {
+        return findAllChildrenOfAsync(List.of(name)).thenApply(children -> children.get(name));
+    }
+
+    /**
+     * Looks up the children of all names; names must not be null. Every caller gets its own lists.
+     */
+    public CompletableFuture<Map<String, List<Person>>> findAllChildrenOfAsync(Collection<String> names) {
+        Map<String, CompletableFuture<List<Person>>> futures = new LinkedHashMap<>();
+        Map<String, CompletableFuture<List<Person>>> owned = new LinkedHashMap<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            Objects.requireNonNull(name, "name");
+            CompletableFuture<List<Person>> created = new CompletableFuture<>();
+            CompletableFuture<List<Person>> existing = inFlight.putIfAbsent(name, created);
+            futures.put(name, existing != null ? existing : created);
+            if (existing == null)
+                owned.put(name, created);
+        }
+
+        if (!owned.isEmpty()) {
+            List<String> batch = new ArrayList<>(owned.keySet());
+            try {
+                CompletableFuture.supplyAsync(() -> browser.findAllChildrenOf(batch), executor)
+                        .whenComplete((children, error) -> complete(owned, children, error));
+            } catch (RuntimeException e) {
+                // e.g. a RejectedExecutionException from a shut down executor: nobody will run the
+                // batch, so fail its names now instead of leaving them in flight for later callers
+                complete(owned, null, e);
+            }
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    Map<String, List<Person>> result = new LinkedHashMap<>();
+                    futures.forEach((name, future) -> result.put(name, new ArrayList<>(future.join())));
+                    return result;
+                });
+    }
+
+    private void complete(Map<String, CompletableFuture<List<Person>>> owned,
+                          Map<String, List<Person>> children, Throwable error) {
+        for (Map.Entry<String, CompletableFuture<List<Person>>> entry : owned.entrySet()) {
+            inFlight.remove(entry.getKey(), entry.getValue());
+            if (error != null)
+                entry.getValue().completeExceptionally(error);
+            else
+                entry.getValue().complete(children.getOrDefault(entry.getKey(), List.of()));
+        }
+    }
+}
+
+// stand-in for a remote relationship store: every call pays a fixed latency and scans all
+// relations, but a batch call pays it once and answers all names in the same single pass
+class SlowRelationshipBrowser implements RelationshipBrowser {
+    private final Relationships relationships;
+    private final long latencyMillis;
+
+    public SlowRelationshipBrowser(Relationships relationships, long latencyMillis) {
+        this.relationships = relationships;
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public List<Person> findAllChildrenOf(String name) {
+        return findAllChildrenOf(List.of(name)).get(name);
+    }
+
+    @Override
+    public List<Person> findAllParentsOf(String name) {
+        roundTrip();
+        return relationships.findAllParentsOf(name);
+    }
+
+    @Override
+    public Map<String, List<Person>> findAllChildrenOf(Collection<String> names) {
+        roundTrip();
+        Set<String> wanted = new HashSet<>(names);
+        Map<String, List<Person>> children = new LinkedHashMap<>();
+        for (String name : names)
+            children.put(name, new ArrayList<>());
+        relationships.getRelations().forEach(relation -> {
+            if (relation.getValue1() == Relationship.PARENT && wanted.contains(relation.getValue0().name))
+                children.get(relation.getValue0().name).add(relation.getValue2());
+        });
+        return children;
+    }
+
+    private void roundTrip() {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
+
+class AsyncRelationshipBrowserDemo {
+    public static void main(String[] args) {
+        Relationships relationships = new Relationships();
+        List<String> parents = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Person parent = new Person("Parent " + i);
+            parents.add(parent.name);
+            relationships.addParentAndChild(parent, new Person("Child " + i + "a"));
+            relationships.addParentAndChild(parent, new Person("Child " + i + "b"));
+        }
+        SlowRelationshipBrowser slow = new SlowRelationshipBrowser(relationships, 20);
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (String name : parents)
+            found += slow.findAllChildrenOf(name).size();
+        System.out.printf("one by one: %d children in %d ms%n", found, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        found = slow.findAllChildrenOf(parents).values().stream().mapToInt(List::size).sum();
+        System.out.printf("batch: %d children in %d ms%n", found, (System.nanoTime() - start) / 1_000_000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AsyncRelationshipBrowser async = new AsyncRelationshipBrowser(slow, executor);
+        start = System.nanoTime();
+        // ten overlapping requests: the names already in flight are coalesced into the first batch
+        List<CompletableFuture<Map<String, List<Person>>>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            requests.add(async.findAllChildrenOfAsync(parents.subList(i, 40 + i)));
+        found = 0;
+        for (CompletableFuture<Map<String, List<Person>>> request : requests)
+            found += request.join().values().stream().mapToInt(List::size).sum();
+        System.out.printf("10 async overlapping requests: %d children in %d ms%n",
+                found, (System.nanoTime() - start) / 1_000_000);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// an indexed Filter: keeps one bitset per Color and per Size ordinal (plus one for null), so that
+// ColorSpecification, SizeSpecification and And/Or/Not trees over them, as well as the masks and
+// flattened terms SpecificationCompiler makes of them, are answered by combining bitsets
+// instead of testing every product
+class BitmapIndexFilter implements Filter<Product> {
+    private final List<Product> catalog;
+    private final BitSet[] byColor = new BitSet[Color.values().length];
+    private final BitSet[] bySize = new BitSet[Size.values().length];
+    private final BitSet nullColor = new BitSet();
+    private final BitSet nullSize = new BitSet();
+    private int indexed;
+
+    public BitmapIndexFilter(List<Product> catalog) {
+        this.catalog = catalog;
+        for (int i = 0; i < byColor.length; i++)
+            byColor[i] = new BitSet();
+        for (int i = 0; i < bySize.length; i++)
+            bySize[i] = new BitSet();
+        refresh();
+    }
+
+    /**
+     * Indexes products appended to the catalog since the last call.
+     * Use {@link #reindex()} if products were removed or modified in place.
+     */
+    public void refresh() {
+        for (int i = indexed; i < catalog.size(); i++) {
+            Product p = catalog.get(i);
+            (p.color == null ? nullColor : byColor[p.color.ordinal()]).set(i);
+            (p.size == null ? nullSize : bySize[p.size.ordinal()]).set(i);
+        }
+        indexed = catalog.size();
+    }
+
+    public void reindex() {
+        for (BitSet bits : byColor)
+            bits.clear();
+        for (BitSet bits : bySize)
+            bits.clear();
+        nullColor.clear();
+        nullSize.clear();
+        indexed = 0;
+        refresh();
+    }
+
+    @Override
+    public Stream<Product> filter(List<Product> items, Specification<Product> spec) {
+        BitSet bits = items == catalog && items.size() == indexed ? evaluate(spec) : null;
+        if (bits == null) // not our catalog, stale index or nothing we can index: plain scan
+            return items.stream().filter(spec::isSatisfied);
+        return bits.stream().mapToObj(items::get);
+    }
+
+    /**
+     * Returns a fresh bitset of the catalog positions satisfying the specification,
+     * or null if the specification can't be answered from the index.
+     */
+    @SuppressWarnings("unchecked")
+    BitSet evaluate(Specification<Product> spec) {
+        if (spec instanceof ColorSpecification) {
+            Color color = ((ColorSpecification) spec).getColor();
+            return (BitSet) (color == null ? nullColor : byColor[color.ordinal()]).clone();
+        }
+        if (spec instanceof SizeSpecification) {
+            Size size = ((SizeSpecification) spec).getSize();
+            return (BitSet) (size == null ? nullSize : bySize[size.ordinal()]).clone();
+        }
+        if (spec instanceof ProductMask)
+            return evaluate((ProductMask) spec);
+        if (spec instanceof SpecificationCompiler.Conjunction) {
+            // AND the indexed terms, check the others per candidate
+            BitSet bits = null;
+            List<Specification<Product>> unindexed = new ArrayList<>();
+            for (Specification<Product> term : ((SpecificationCompiler.Conjunction<Product>) spec).getTerms()) {
+                BitSet termBits = evaluate(term);
+                if (termBits == null)
+                    unindexed.add(term);
+                else if (bits == null)
+                    bits = termBits;
+                else
+                    bits.and(termBits);
+            }
+            if (bits != null)
+                for (Specification<Product> term : unindexed)
+                    bits = retain(bits, term);
+            return bits;
+        }
+        if (spec instanceof SpecificationCompiler.Disjunction) {
+            BitSet bits = new BitSet();
+            for (Specification<Product> term : ((SpecificationCompiler.Disjunction<Product>) spec).getTerms()) {
+                BitSet termBits = evaluate(term);
+                if (termBits == null)
+                    return null;
+                bits.or(termBits);
+            }
+            return bits;
+        }
+        if (spec instanceof AndSpecification) {
+            AndSpecification<Product> and = (AndSpecification<Product>) spec;
+            BitSet first = evaluate(and.getFirst());
+            BitSet second = evaluate(and.getSecond());
+            if (first != null && second != null) {
+                first.and(second);
+                return first;
+            }
+            // only one side is indexed: use it to narrow the candidates, check the other one per item
+            if (first != null)
+                return retain(first, and.getSecond());
+            if (second != null)
+                return retain(second, and.getFirst());
+        }
+        if (spec instanceof OrSpecification) {
+            OrSpecification<Product> or = (OrSpecification<Product>) spec;
+            BitSet first = evaluate(or.getFirst());
+            BitSet second = first == null ? null : evaluate(or.getSecond());
+            if (second != null) {
+                first.or(second);
+                return first;
+            }
+        }
+        if (spec instanceof NotSpecification) {
+            BitSet bits = evaluate(((NotSpecification<Product>) spec).getSpec());
+            if (bits != null) {
+                bits.flip(0, indexed);
+                return bits;
+            }
+        }
+        return null;
+    }
+
+    // for every color slot: its bitset AND the union of the sizes the mask accepts with it
+    private BitSet evaluate(ProductMask mask) {
+        BitSet result = new BitSet();
+        for (int c = 0; c < ProductMask.COLOR_SLOTS; c++) {
+            BitSet sizes = new BitSet();
+            for (int s = 0; s < ProductMask.SIZE_SLOTS; s++)
+                if (mask.matches(c, s))
+                    sizes.or(s == 0 ? nullSize : bySize[s - 1]);
+            if (sizes.isEmpty())
+                continue;
+            sizes.and(c == 0 ? nullColor : byColor[c - 1]);
+            result.or(sizes);
+        }
+        return result;
+    }
+
+    private BitSet retain(BitSet candidates, Specification<Product> spec) {
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+            if (!spec.isSatisfied(catalog.get(i)))
+                candidates.clear(i);
+        return candidates;
+    }
+}
+
+class BitmapIndexFilterDemo {
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2_000_000; i++)
+            products.add(new Product("Product " + i,
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+
+        Specification<Product> largeBlue = new AndSpecification<>(
+                new ColorSpecification(Color.BLUE),
+                new SizeSpecification(Size.LARGE));
+
+        BetterFilter bf = new BetterFilter();
+        BitmapIndexFilter indexed = new BitmapIndexFilter(products);
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long scanned = bf.filter(products, largeBlue).count();
+            long scanTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long found = indexed.filter(products, largeBlue).count();
+            long indexTime = System.nanoTime() - start;
+
+            System.out.printf("large blue: scan %d in %d ms, bitmap %d in %d ms%n",
+                    scanned, scanTime / 1_000_000, found, indexTime / 1_000_000);
+        }
+    }
+}
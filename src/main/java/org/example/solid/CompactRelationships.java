@@ -0,0 +1,190 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// compact storage for the relationship graph: every name is dictionary-encoded to an int id,
+// and the edges live in compressed-sparse-row arrays. The edges of person v are
+// edges[offsets[v] .. offsets[v + 1]), each one an int word holding the id of the other
+// person in the upper 30 bits and the Relationship ordinal in the lower 2 bits.
+// A relationship (two edges) costs 8 bytes instead of two Triplet objects.
+// New edges are buffered and merged into the CSR arrays once the buffer holds a sixteenth of
+// the merged edges (or on compact()), so additions cost amortized O(1). Buffered edges are
+// chained per source id in the order they were added, so a query reads the arrays and follows
+// its own chain, never the whole buffer, and modifies nothing. Queries may run from several
+// threads as long as no addition runs at the same time. Call compact() after a bulk load.
+class CompactRelationships implements RelationshipBrowser {
+    private static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+    private static final int MAX_ID = (1 << (Integer.SIZE - KIND_BITS)) - 1;
+    private static final int MIN_PENDING = 4096;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<Person> persons = new ArrayList<>();
+
+    private int[] offsets = new int[1];
+    private int[] edges = new int[0];
+
+    private int[] pendingFrom = new int[16];
+    private int[] pendingEdges = new int[16];
+    private int pending;
+    // per source id, its first and last buffered edge plus one (0: none); pendingNext links
+    // each buffered edge to the next one of the same source, again plus one
+    private int[] pendingFirst = new int[16];
+    private int[] pendingLast = new int[16];
+    private int[] pendingNext = new int[16];
+
+    public void addParentAndChild(Person parent, Person child) {
+        int parentId = idOf(parent);
+        int childId = idOf(child);
+        addEdge(parentId, Relationship.PARENT, childId);
+        addEdge(childId, Relationship.CHILD, parentId);
+    }
+
+    @Override
+    public List<Person> findAllChildrenOf(String name) {
+        return findAll(name, Relationship.PARENT);
+    }
+
+    @Override
+    public List<Person> findAllParentsOf(String name) {
+        return findAll(name, Relationship.CHILD);
+    }
+
+    List<Person> findAll(String name, Relationship relationship) {
+        List<Person> result = new ArrayList<>();
+        Integer id = ids.get(name);
+        if (id == null)
+            return result;
+        int kind = relationship.ordinal();
+        if (id < offsets.length - 1)
+            for (int i = offsets[id]; i < offsets[id + 1]; i++)
+                if ((edges[i] & KIND_MASK) == kind)
+                    result.add(persons.get(edges[i] >>> KIND_BITS));
+        // edges not merged yet, in the order compact() would append them
+        for (int k = id < pendingFirst.length ? pendingFirst[id] : 0; k != 0; k = pendingNext[k - 1])
+            if ((pendingEdges[k - 1] & KIND_MASK) == kind)
+                result.add(persons.get(pendingEdges[k - 1] >>> KIND_BITS));
+        return result;
+    }
+
+    public int personCount() {
+        return persons.size();
+    }
+
+    public int edgeCount() {
+        return edges.length + pending;
+    }
+
+    /**
+     * Merges the buffered edges into the CSR arrays with a counting sort by source id.
+     */
+    public void compact() {
+        if (pending == 0)
+            return;
+        int n = persons.size();
+        int known = offsets.length - 1;
+        int[] newOffsets = new int[n + 1];
+        for (int v = 0; v < known; v++)
+            newOffsets[v + 1] = offsets[v + 1] - offsets[v];
+        for (int k = 0; k < pending; k++)
+            newOffsets[pendingFrom[k] + 1]++;
+        for (int v = 0; v < n; v++)
+            newOffsets[v + 1] += newOffsets[v];
+
+        int[] newEdges = new int[newOffsets[n]];
+        int[] cursor = Arrays.copyOf(newOffsets, n);
+        for (int v = 0; v < known; v++) {
+            int degree = offsets[v + 1] - offsets[v];
+            System.arraycopy(edges, offsets[v], newEdges, cursor[v], degree);
+            cursor[v] += degree;
+        }
+        for (int k = 0; k < pending; k++)
+            newEdges[cursor[pendingFrom[k]]++] = pendingEdges[k];
+
+        for (int k = 0; k < pending; k++)
+            pendingFirst[pendingFrom[k]] = 0;
+        offsets = newOffsets;
+        edges = newEdges;
+        pending = 0; // the buffer is kept for the next additions
+    }
+
+    // the first Person registered under a name represents everybody with that name
+    private int idOf(Person person) {
+        Integer id = ids.get(person.name);
+        if (id == null) {
+            if (persons.size() > MAX_ID)
+                throw new IllegalStateException("Too many people for compact storage: " + persons.size());
+            id = persons.size();
+            persons.add(person);
+            ids.put(person.name, id);
+        }
+        return id;
+    }
+
+    private void addEdge(int from, Relationship relationship, int to) {
+        if (pending >= Math.max(MIN_PENDING, edges.length >> 4))
+            compact();
+        if (pending == pendingFrom.length) {
+            pendingFrom = Arrays.copyOf(pendingFrom, pending * 2);
+            pendingEdges = Arrays.copyOf(pendingEdges, pending * 2);
+            pendingNext = Arrays.copyOf(pendingNext, pending * 2);
+        }
+        if (from >= pendingFirst.length) {
+            int length = Math.max(from + 1, pendingFirst.length * 2);
+            pendingFirst = Arrays.copyOf(pendingFirst, length);
+            pendingLast = Arrays.copyOf(pendingLast, length);
+        }
+        pendingFrom[pending] = from;
+        pendingEdges[pending] = (to << KIND_BITS) | relationship.ordinal();
+        pendingNext[pending] = 0;
+        if (pendingFirst[from] == 0)
+            pendingFirst[from] = pending + 1;
+        else
+            pendingNext[pendingLast[from] - 1] = pending + 1;
+        pendingLast[from] = pending + 1;
+        pending++;
+    }
+}
+
+class CompactRelationshipsDemo {
+    public static void main(String[] args) {
+        int families = 500_000;
+
+        long before = usedMemory();
+        Relationships relationships = new Relationships();
+        for (int i = 0; i < families; i++) {
+            Person parent = new Person("Parent " + i);
+            relationships.addParentAndChild(parent, new Person("Child " + i + "a"));
+            relationships.addParentAndChild(parent, new Person("Child " + i + "b"));
+        }
+        long objects = usedMemory() - before;
+
+        before = usedMemory();
+        CompactRelationships compact = new CompactRelationships();
+        for (int i = 0; i < families; i++) {
+            Person parent = new Person("Parent " + i);
+            compact.addParentAndChild(parent, new Person("Child " + i + "a"));
+            compact.addParentAndChild(parent, new Person("Child " + i + "b"));
+        }
+        compact.compact();
+        long csr = usedMemory() - before;
+
+        // both numbers include the Person objects and their names; the compact edges themselves take 4 bytes each
+        System.out.printf("triplets + index: %d MB, compact: %d MB for %d edges%n",
+                objects >> 20, csr >> 20, compact.edgeCount());
+        for (Person child : compact.findAllChildrenOf("Parent 42"))
+            System.out.println("Parent 42 has a child called " + child.name);
+        System.out.println(relationships.findAllChildrenOf("Parent 42").size() + " children in the object graph");
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
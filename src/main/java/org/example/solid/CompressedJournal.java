@@ -0,0 +1,256 @@
+package org.example.solid;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// block-compressed journal file with random access by entry position.
+//
+// layout: header (int magic, int entries per block)
+//         blocks: Deflater output of (int length, UTF-8 bytes) for each entry of the block
+//         index:  per block (long offset, int compressed length, int raw length, int first entry)
+//         trailer (long index offset, int block count, int total entries, int magic)
+// Reading entry n inflates only the block containing it.
+class CompressedJournal {
+    static final int MAGIC = 0x4A5A4231; // "JZB1"
+    static final int TRAILER = 20;
+    static final int INDEX_ENTRY = 20;
+    public static final int DEFAULT_BLOCK_ENTRIES = 256;
+
+    private CompressedJournal() {
+    }
+
+    public static void write(List<String> entries, Path path) throws IOException {
+        write(entries, path, DEFAULT_BLOCK_ENTRIES, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public static void write(List<String> entries, Path path, int blockEntries, int level) throws IOException {
+        if (blockEntries < 1)
+            throw new IllegalArgumentException("blockEntries must be positive: " + blockEntries);
+        int blocks = (entries.size() + blockEntries - 1) / blockEntries;
+        ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY);
+        Deflater deflater = new Deflater(level);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(blockEntries);
+            header.flip();
+            long position = writeFully(channel, header, 0);
+            byte[] compressed = new byte[64 * 1024];
+            for (int first = 0; first < entries.size(); first += blockEntries) {
+                ByteBuffer raw = encode(entries.subList(first, Math.min(entries.size(), first + blockEntries)));
+                deflater.reset();
+                deflater.setInput(raw.array(), 0, raw.position());
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == compressed.length)
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                index.putLong(position).putInt(length).putInt(raw.position()).putInt(first);
+                position = writeFully(channel, ByteBuffer.wrap(compressed, 0, length), position);
+            }
+            long indexOffset = position;
+            index.flip();
+            position = writeFully(channel, index, position);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER)
+                    .putLong(indexOffset).putInt(blocks).putInt(entries.size()).putInt(MAGIC);
+            trailer.flip();
+            writeFully(channel, trailer, position);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer encode(List<String> entries) {
+        List<byte[]> encoded = new ArrayList<>(entries.size());
+        int size = 0;
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += 4 + bytes.length;
+        }
+        ByteBuffer raw = ByteBuffer.allocate(size);
+        for (byte[] bytes : encoded)
+            raw.putInt(bytes.length).put(bytes);
+        return raw;
+    }
+
+    // returns the position after the written bytes
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        return position;
+    }
+}
+
+class CompressedJournalReader implements Closeable {
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] firstEntries;
+    private final int entries;
+    private final Inflater inflater = new Inflater();
+
+    // the last block read, as sequential reads mostly hit the same block again
+    private int cachedBlock = -1;
+    private String[] cached;
+
+    public CompressedJournalReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 8 + CompressedJournal.TRAILER)
+                throw new IOException("Not a compressed journal: " + path);
+            ByteBuffer trailer = read(size - CompressedJournal.TRAILER, CompressedJournal.TRAILER);
+            long indexOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            entries = trailer.getInt();
+            if (trailer.getInt() != CompressedJournal.MAGIC || read(0, 4).getInt() != CompressedJournal.MAGIC)
+                throw new IOException("Not a compressed journal: " + path);
+            ByteBuffer index = read(indexOffset, blocks * CompressedJournal.INDEX_ENTRY);
+            offsets = new long[blocks];
+            compressedLengths = new int[blocks];
+            rawLengths = new int[blocks];
+            firstEntries = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                offsets[b] = index.getLong();
+                compressedLengths[b] = index.getInt();
+                rawLengths[b] = index.getInt();
+                firstEntries[b] = index.getInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Returns the entry at the given position (0-based), inflating only its block.
+     */
+    public synchronized String readEntry(int n) throws IOException {
+        if (n < 0 || n >= entries)
+            throw new IndexOutOfBoundsException("Entry: " + n + ", Size: " + entries);
+        int block = Arrays.binarySearch(firstEntries, n);
+        if (block < 0)
+            block = -block - 2;
+        return block(block)[n - firstEntries[block]];
+    }
+
+    public synchronized List<String> readAll() throws IOException {
+        List<String> all = new ArrayList<>(entries);
+        for (int b = 0; b < offsets.length; b++)
+            all.addAll(Arrays.asList(block(b)));
+        return all;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private String[] block(int block) throws IOException {
+        if (block == cachedBlock)
+            return cached;
+        ByteBuffer compressed = read(offsets[block], compressedLengths[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressedLengths[block]);
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Truncated block " + block);
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + block, e);
+        }
+        int count = (block + 1 < firstEntries.length ? firstEntries[block + 1] : entries) - firstEntries[block];
+        String[] result = new String[count];
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            result[i] = new String(raw, buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+        cachedBlock = block;
+        cached = result;
+        return result;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+}
+
+class CompressedJournalDemo {
+    public static void main(String[] args) throws IOException {
+        Journal journal = new Journal();
+        Random random = new Random(42);
+        String[] moods = {"happy", "sad", "tired", "hungry", "bored", "excited"};
+        for (int i = 0; i < 500_000; i++)
+            journal.addEntry("Dear diary, today I was " + moods[random.nextInt(moods.length)]
+                    + " and ate " + random.nextInt(10) + " bugs");
+
+        Persistence p = new Persistence();
+        Path plain = Files.createTempFile("journal", ".txt");
+        Path compressed = Files.createTempFile("journal", ".jzb");
+        p.saveToFile(journal, plain.toString(), true);
+        p.saveCompressed(journal, compressed.toString());
+        System.out.printf("plain %,d bytes, compressed %,d bytes, ratio %.1f%n",
+                Files.size(plain), Files.size(compressed), (double) Files.size(plain) / Files.size(compressed));
+
+        int reads = 200;
+        int[] positions = random.ints(reads, 0, journal.getEntries().size()).toArray();
+
+        long start = System.nanoTime();
+        for (int n : positions) {
+            try (BufferedReader reader = Files.newBufferedReader(plain)) {
+                for (int i = 0; i < n; i++)
+                    reader.readLine();
+                reader.readLine();
+            }
+        }
+        System.out.printf("plain text: %d us per random read%n", (System.nanoTime() - start) / reads / 1000);
+
+        try (CompressedJournalReader reader = new CompressedJournalReader(compressed)) {
+            start = System.nanoTime();
+            for (int n : positions)
+                reader.readEntry(n);
+            System.out.printf("compressed blocks: %d us per random read%n", (System.nanoTime() - start) / reads / 1000);
+            System.out.println(reader.readEntry(positions[0]));
+        }
+
+        Journal loaded = new Journal();
+        p.loadCompressed(loaded, compressed.toString());
+        System.out.println("loaded back " + loaded.getEntries().size() + " entries");
+        Files.delete(plain);
+        Files.delete(compressed);
+    }
+}
@@ -0,0 +1,350 @@
+package org.example.solid;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// a journal for many concurrent writers. addEntry claims the next entry number from an atomic
+// sequence and publishes the entry into that slot of a ring buffer, so producers never wait for
+// each other; a single consumer thread drains the ring, in entry number order, into segment
+// storage. Producers only wait when the ring is full, for the consumer to catch up.
+class ConcurrentJournal implements Closeable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int DRAIN_BATCH = 1024;
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    private final AtomicReferenceArray<String> ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); // sequences handed out to producers
+    private volatile long consumed;                     // sequences below this are in storage
+    private volatile boolean running = true;
+
+    private final JournalSegments storage = new JournalSegments();
+    private final Thread consumer;
+
+    public ConcurrentJournal() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConcurrentJournal(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        ring = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        consumer = new Thread(this::drain, "journal-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Adds an entry and returns its number. Safe to call from any number of threads.
+     */
+    public long addEntry(String text) {
+        if (!running)
+            throw new IllegalStateException("Journal is closed");
+        long sequence = claimed.getAndIncrement();
+        long number = sequence + 1;
+        for (int spins = 0; sequence - consumed >= ring.length(); spins++) { // ring full
+            if (spins < IDLE_SPINS)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+        ring.lazySet((int) (sequence & mask), number + ": " + text);
+        return number;
+    }
+
+    /**
+     * Waits until every entry added before this call is in storage.
+     */
+    public void flush() {
+        long target = claimed.get();
+        while (consumed < target) {
+            if (!consumer.isAlive())
+                throw new IllegalStateException("Journal consumer has stopped");
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    public String getEntry(long number) {
+        return storage.get(number);
+    }
+
+    /**
+     * Removes an entry by number; the numbers of the other entries don't change.
+     */
+    public boolean removeEntry(long number) {
+        if (number > claimed.get())
+            return false;
+        while (consumed < number) // still in the ring
+            flush();
+        return storage.remove(number);
+    }
+
+    public ScheduledFuture<?> scheduleCompaction(ScheduledExecutorService executor, long periodMillis) {
+        return storage.scheduleCompaction(executor, periodMillis, 0.5);
+    }
+
+    public long size() {
+        return storage.size();
+    }
+
+    @Override
+    public String toString() {
+        return storage.toString();
+    }
+
+    // drains everything added so far; entries added while closing may be dropped
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        long next = 0;
+        int idle = 0;
+        List<String> batch = new ArrayList<>(DRAIN_BATCH);
+        while (true) {
+            while (batch.size() < DRAIN_BATCH) {
+                int slot = (int) (next & mask);
+                String entry = ring.get(slot);
+                if (entry == null) // not published yet
+                    break;
+                ring.lazySet(slot, null);
+                batch.add(entry);
+                next++;
+            }
+            if (!batch.isEmpty()) {
+                storage.append(next - batch.size() + 1, batch);
+                batch.clear();
+                consumed = next;
+                idle = 0;
+            } else if (!running && next >= claimed.get()) {
+                return;
+            } else if (++idle < IDLE_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
+
+// entry storage in segments of up to SEGMENT_SIZE entries with ascending numbers.
+// A sparse index maps the first entry number of every segment to the segment, so a lookup is
+// a floor search over segments plus an offset (or a binary search in compacted segments).
+// Removing an entry only writes a tombstone: O(1) after the lookup, and the numbers of all
+// other entries stay the same. compact() rewrites segments with many tombstones without them.
+class JournalSegments {
+    static final int SEGMENT_SIZE = 4096;
+
+    static final class Segment {
+        final long first;
+        final long[] numbers;   // null while the numbers are first, first + 1, ...
+        final String[] entries; // null entries are tombstones
+        int size, live;
+
+        Segment(long first, int capacity) {
+            this.first = first;
+            this.numbers = null;
+            this.entries = new String[capacity];
+        }
+
+        Segment(long[] numbers, String[] entries) {
+            this.first = numbers[0];
+            this.numbers = numbers;
+            this.entries = entries;
+            this.size = this.live = entries.length;
+        }
+
+        int indexOf(long number) {
+            if (numbers == null)
+                return number - first < size ? (int) (number - first) : -1;
+            int i = Arrays.binarySearch(numbers, 0, size, number);
+            return i < 0 ? -1 : i;
+        }
+
+        long numberAt(int i) {
+            return numbers == null ? first + i : numbers[i];
+        }
+    }
+
+    private final TreeMap<Long, Segment> index = new TreeMap<>();
+    private Segment tail;
+    private long last;
+    private long live;
+
+    /**
+     * Appends entries numbered first, first + 1, ... which must follow the last stored one.
+     */
+    public synchronized void append(long first, List<String> entries) {
+        if (first != last + 1)
+            throw new IllegalArgumentException("Expected entry " + (last + 1) + " but got " + first);
+        for (String entry : entries) {
+            if (tail == null || tail.size == tail.entries.length) {
+                tail = new Segment(last + 1, SEGMENT_SIZE);
+                index.put(tail.first, tail);
+            }
+            tail.entries[tail.size++] = entry;
+            tail.live++;
+            last++;
+            live++;
+        }
+    }
+
+    public synchronized String get(long number) {
+        Map.Entry<Long, Segment> floor = index.floorEntry(number);
+        if (floor == null)
+            return null;
+        int i = floor.getValue().indexOf(number);
+        return i < 0 ? null : floor.getValue().entries[i];
+    }
+
+    /**
+     * Tombstones an entry; returns false if there is no such entry (any more).
+     */
+    public synchronized boolean remove(long number) {
+        Map.Entry<Long, Segment> floor = index.floorEntry(number);
+        if (floor == null)
+            return false;
+        Segment segment = floor.getValue();
+        int i = segment.indexOf(number);
+        if (i < 0 || segment.entries[i] == null)
+            return false;
+        segment.entries[i] = null;
+        segment.live--;
+        live--;
+        if (segment.live == 0 && segment != tail)
+            index.remove(segment.first);
+        return true;
+    }
+
+    // number of entries that haven't been removed
+    public synchronized long size() {
+        return live;
+    }
+
+    public synchronized long lastNumber() {
+        return last;
+    }
+
+    public synchronized int segmentCount() {
+        return index.size();
+    }
+
+    /**
+     * Rewrites every full segment whose share of tombstones is at least the threshold, and drops
+     * the ones with no entries left that remove() kept because they were the tail at the time.
+     * The lock is taken per segment, so readers and the appender are only held up briefly.
+     */
+    public int compact(double threshold) {
+        List<Long> candidates;
+        synchronized (this) {
+            candidates = new ArrayList<>(index.keySet());
+        }
+        int rewritten = 0;
+        for (Long first : candidates) {
+            synchronized (this) {
+                Segment segment = index.get(first);
+                if (segment == null || segment == tail)
+                    continue;
+                if (segment.live == 0) {
+                    index.remove(first);
+                    rewritten++;
+                    continue;
+                }
+                if (segment.size - segment.live < threshold * segment.size)
+                    continue;
+                long[] numbers = new long[segment.live];
+                String[] entries = new String[segment.live];
+                int k = 0;
+                for (int i = 0; i < segment.size; i++)
+                    if (segment.entries[i] != null) {
+                        numbers[k] = segment.numberAt(i);
+                        entries[k++] = segment.entries[i];
+                    }
+                index.remove(first);
+                index.put(numbers[0], new Segment(numbers, entries));
+                rewritten++;
+            }
+        }
+        return rewritten;
+    }
+
+    /**
+     * Runs compact(threshold) in the background every period.
+     */
+    public ScheduledFuture<?> scheduleCompaction(ScheduledExecutorService executor, long periodMillis,
+                                                 double threshold) {
+        return executor.scheduleWithFixedDelay(() -> compact(threshold),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : index.values())
+            for (int i = 0; i < segment.size; i++)
+                if (segment.entries[i] != null) {
+                    if (sb.length() > 0)
+                        sb.append(System.lineSeparator());
+                    sb.append(segment.entries[i]);
+                }
+        return sb.toString();
+    }
+}
+
+class ConcurrentJournalDemo {
+    public static void main(String[] args) throws InterruptedException {
+        int threads = 8, perThread = 250_000;
+        try (ConcurrentJournal journal = new ConcurrentJournal()) {
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                new Thread(() -> {
+                    for (int i = 0; i < perThread; i++)
+                        journal.addEntry("logger " + thread + " says " + i);
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            journal.flush();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d entries from %d threads in %d ms, no numbers lost or duplicated: %b%n",
+                    journal.size(), threads, elapsed / 1_000_000, journal.size() == (long) threads * perThread);
+            System.out.println(journal.getEntry(1));
+            System.out.println(journal.getEntry(journal.size()));
+
+            // delete every other entry; the survivors keep their numbers
+            ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor();
+            journal.scheduleCompaction(compactor, 100);
+            start = System.nanoTime();
+            for (long number = 1; number <= (long) threads * perThread; number += 2)
+                journal.removeEntry(number);
+            System.out.printf("removed %d entries in %d ms, %d left%n", (long) threads * perThread / 2,
+                    (System.nanoTime() - start) / 1_000_000, journal.size());
+            Thread.sleep(300); // let the compactor run
+            compactor.shutdown();
+            System.out.println(journal.getEntry(1) + " / " + journal.getEntry(2) + " / " + journal.getEntry(1_000_000));
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// a persistent map from names to values: a hash array mapped trie in which put copies only
+// the nodes on the path to its key (at most seven, of up to 32 slots each) and shares all
+// others with the previous version, which stays valid and unchanged. Puts that pass the same
+// edit token may change the nodes created under that token in place, so a batch of puts
+// copies each path once; a token must not be used again once its version is shared.
+final class HashTrie<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object[] NO_SLOTS = new Object[0];
+    private static final HashTrie<?> EMPTY = new HashTrie<>(new Node(null, 0, NO_SLOTS), 0);
+
+    // a slot holds a Leaf or a child Node; below the last level of hash bits the node is a
+    // plain list of leaves whose names have the same hash
+    private static final class Node {
+        final Object edit;
+        int bitmap;
+        Object[] slots;
+
+        Node(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        Node editable(Object edit) {
+            return edit != null && edit == this.edit ? this : new Node(edit, bitmap, slots.clone());
+        }
+    }
+
+    private static final class Leaf {
+        final String key;
+        final int hash;
+        final Object value;
+
+        Leaf(String key, int hash, Object value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> HashTrie<V> empty() {
+        return (HashTrie<V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(String key) {
+        int hash = hash(key);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            Object slot;
+            if (shift >= Integer.SIZE) {
+                for (Object leaf : node.slots)
+                    if (Objects.equals(((Leaf) leaf).key, key))
+                        return (V) ((Leaf) leaf).value;
+                return null;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0)
+                return null;
+            slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Leaf)
+                return Objects.equals(((Leaf) slot).key, key) ? (V) ((Leaf) slot).value : null;
+            node = (Node) slot;
+        }
+    }
+
+    /**
+     * A version that maps the key to the value; edit is the token of the current batch, or null.
+     */
+    public HashTrie<V> put(String key, V value, Object edit) {
+        boolean[] added = new boolean[1];
+        Node root = put(this.root, 0, new Leaf(key, hash(key), value), edit, added);
+        if (root == this.root && !added[0])
+            return this;
+        return new HashTrie<>(root, added[0] ? size + 1 : size);
+    }
+
+    private static Node put(Node node, int shift, Leaf leaf, Object edit, boolean[] added) {
+        if (shift >= Integer.SIZE) {
+            for (int i = 0; i < node.slots.length; i++) {
+                if (Objects.equals(((Leaf) node.slots[i]).key, leaf.key)) {
+                    Node target = node.editable(edit);
+                    target.slots[i] = leaf;
+                    return target;
+                }
+            }
+            added[0] = true;
+            Object[] slots = Arrays.copyOf(node.slots, node.slots.length + 1);
+            slots[node.slots.length] = leaf;
+            return update(node, edit, 0, slots);
+        }
+        int bit = 1 << ((leaf.hash >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = leaf;
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            return update(node, edit, node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = put((Node) slot, shift + BITS, leaf, edit, added);
+        } else if (Objects.equals(((Leaf) slot).key, leaf.key)) {
+            replacement = leaf;
+        } else {
+            // two names share the slot: push both one level down
+            added[0] = true;
+            Node child = put(new Node(edit, 0, NO_SLOTS), shift + BITS, (Leaf) slot, edit, new boolean[1]);
+            replacement = put(child, shift + BITS, leaf, edit, new boolean[1]);
+        }
+        if (replacement == slot)
+            return node;
+        Node target = node.editable(edit);
+        target.slots[index] = replacement;
+        return target;
+    }
+
+    private static Node update(Node node, Object edit, int bitmap, Object[] slots) {
+        if (edit == null || edit != node.edit)
+            return new Node(edit, bitmap, slots);
+        node.bitmap = bitmap;
+        node.slots = slots;
+        return node;
+    }
+
+    private static int hash(String key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
+
+// a RelationshipBrowser that can be written while queries run on other threads.
+// Writers build a new immutable snapshot and publish it through a volatile field; readers
+// only ever read a published snapshot, so they take no lock and never see a half-applied batch.
+// The people live in a HashTrie, so a batch copies only the trie paths to the people it
+// changes, plus one array per changed person and relationship, however many people there are.
+class ConcurrentRelationships implements RelationshipBrowser {
+    private static final Relationship[] KINDS = Relationship.values();
+    private static final Person[] NONE = new Person[0];
+
+    // everything reachable from a published snapshot is never modified again
+    private static final class Snapshot {
+        final HashTrie<Person[][]> people;
+        final long edges;
+
+        Snapshot(HashTrie<Person[][]> people, long edges) {
+            this.people = people;
+            this.edges = edges;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(HashTrie.empty(), 0);
+    private final Object writeLock = new Object();
+
+    @Override
+    public List<Person> findAllChildrenOf(String name) {
+        return findAll(name, Relationship.PARENT);
+    }
+
+    @Override
+    public List<Person> findAllParentsOf(String name) {
+        return findAll(name, Relationship.CHILD);
+    }
+
+    List<Person> findAll(String name, Relationship relationship) {
+        Person[][] adjacency = snapshot.people.get(name);
+        return adjacency == null
+                ? new ArrayList<>()
+                : new ArrayList<>(Arrays.asList(adjacency[relationship.ordinal()]));
+    }
+
+    public long edgeCount() {
+        return snapshot.edges;
+    }
+
+    public int personCount() {
+        return snapshot.people.size();
+    }
+
+    public void addParentAndChild(Person parent, Person child) {
+        update(batch -> batch.addParentAndChild(parent, child));
+    }
+
+    /**
+     * Applies all changes of the batch and publishes them as one new snapshot.
+     * Writers are serialized; readers keep using the previous snapshot until then.
+     */
+    public void update(Consumer<Batch> changes) {
+        synchronized (writeLock) {
+            Batch batch = new Batch();
+            changes.accept(batch);
+            snapshot = batch.apply(snapshot);
+        }
+    }
+
+    static class Batch {
+        private final Map<String, EnumMap<Relationship, List<Person>>> additions = new HashMap<>();
+        private long edges;
+
+        public Batch addParentAndChild(Person parent, Person child) {
+            add(parent.name, Relationship.PARENT, child);
+            add(child.name, Relationship.CHILD, parent);
+            return this;
+        }
+
+        private void add(String name, Relationship relationship, Person other) {
+            additions.computeIfAbsent(name, n -> new EnumMap<>(Relationship.class))
+                    .computeIfAbsent(relationship, r -> new ArrayList<>())
+                    .add(other);
+            edges++;
+        }
+
+        private Snapshot apply(Snapshot current) {
+            // trie nodes made by this batch are changed in place until the snapshot is published
+            Object edit = new Object();
+            HashTrie<Person[][]> people = current.people;
+            for (Map.Entry<String, EnumMap<Relationship, List<Person>>> entry : additions.entrySet()) {
+                Person[][] old = people.get(entry.getKey());
+                Person[][] merged = new Person[KINDS.length][];
+                for (Relationship kind : KINDS) {
+                    Person[] before = old == null ? NONE : old[kind.ordinal()];
+                    List<Person> added = entry.getValue().get(kind);
+                    if (added == null) {
+                        merged[kind.ordinal()] = before;
+                    } else {
+                        Person[] after = Arrays.copyOf(before, before.length + added.size());
+                        for (int i = 0; i < added.size(); i++)
+                            after[before.length + i] = added.get(i);
+                        merged[kind.ordinal()] = after;
+                    }
+                }
+                people = people.put(entry.getKey(), merged, edit);
+            }
+            return new Snapshot(people, current.edges + edges);
+        }
+    }
+}
+
+class ConcurrentRelationshipsDemo {
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentRelationships relationships = new ConcurrentRelationships();
+        relationships.update(batch -> {
+            for (int i = 0; i < 100_000; i++)
+                batch.addParentAndChild(new Person("Parent " + i), new Person("Child " + i));
+        });
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            int next = 100_000;
+            while (running.get()) {
+                int from = next;
+                relationships.update(batch -> {
+                    for (int i = from; i < from + 100; i++)
+                        batch.addParentAndChild(new Person("Parent " + i), new Person("Child " + i));
+                });
+                next += 100;
+            }
+        });
+        writer.start();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int readers = 1; readers <= cores; readers++) {
+            AtomicLong reads = new AtomicLong();
+            AtomicBoolean reading = new AtomicBoolean(true);
+            List<Thread> threads = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                int seed = r;
+                Thread reader = new Thread(() -> {
+                    long count = 0;
+                    int i = seed;
+                    while (reading.get()) {
+                        relationships.findAllChildrenOf("Parent " + (i++ % 100_000));
+                        count++;
+                    }
+                    reads.addAndGet(count);
+                });
+                threads.add(reader);
+                reader.start();
+            }
+            Thread.sleep(1000);
+            reading.set(false);
+            for (Thread reader : threads)
+                reader.join();
+            System.out.printf("%d reader(s): %,d reads/s while %,d edges were written%n",
+                    readers, reads.get(), relationships.edgeCount());
+        }
+        running.set(false);
+        writer.join();
+    }
+}
@@ -8,10 +8,15 @@ package org.example.solid;
 
 import org.javatuples.Triplet;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 enum Relationship {
     PARENT,
@@ -31,37 +36,149 @@ class Person {
 
 interface RelationshipBrowser {
     List<Person> findAllChildrenOf(String name);
+
+    List<Person> findAllParentsOf(String name);
+
+    // answers several names at once; browsers with a per-call cost should override this
+    default Map<String, List<Person>> findAllChildrenOf(Collection<String> names) {
+        Map<String, List<Person>> children = new LinkedHashMap<>();
+        for (String name : names)
+            if (!children.containsKey(name))
+                children.put(name, findAllChildrenOf(name));
+        return children;
+    }
+
+    // transitive lookups, see RelationshipTraversal
+    default List<Person> findAllDescendantsOf(String name, int maxDepth) {
+        return new RelationshipTraversal(this).descendantsOf(name, maxDepth);
+    }
+
+    default List<Person> findAllAncestorsOf(String name, int maxDepth) {
+        return new RelationshipTraversal(this).ancestorsOf(name, maxDepth);
+    }
+
+    default List<Person> findAllSiblingsOf(String name) {
+        return new RelationshipTraversal(this).siblingsOf(name);
+    }
 }
 
 class Relationships implements RelationshipBrowser {
+    // optional write-through persistence
+    private EdgeLog log;
+
+    public Relationships() {
+    }
+
+    /**
+     * Restores the relationships recorded in the log, then writes every new one through to it.
+     * People are restored by name, one Person per distinct name. New relationships are only
+     * durable once committed: the log commits every few thousand, call commit() for the rest.
+     */
+    public Relationships(EdgeLog log) throws IOException {
+        long records = log.getRecords();
+        if (records > 0 && records <= Integer.MAX_VALUE / 2) {
+            relations = new ArrayList<>((int) records * 2);
+            index = new HashMap<>((int) Math.min(1 << 30, records * 8 / 3));
+        }
+        // the log hands out one Adjacency per distinct name, so the index gets one put per person
+        // and an edge costs no lookups
+        log.replay(name -> {
+            Adjacency adjacency = new Adjacency(new Person(name));
+            index.put(name, adjacency);
+            return adjacency;
+        }, (parent, child) -> {
+            relations.add(new Triplet<>(parent.person, Relationship.PARENT, child.person));
+            parent.add(Relationship.PARENT, child.person);
+            relations.add(new Triplet<>(child.person, Relationship.CHILD, parent.person));
+            child.add(Relationship.CHILD, parent.person);
+        });
+        this.log = log;
+    }
+
+    /**
+     * Writes the relationships added since the last commit to the log, if there is one.
+     */
+    public void commit() throws IOException {
+        if (log != null)
+            log.commit();
+    }
+
     /**
      * 该方法用于查找给定姓名的人的所有子女。
      *
      * @param name 要查找子女的人的姓名
      * @return 代表给定姓名的人的所有子女的Person对象列表
      *
-     * <p>该方法通过流式处理关系，过滤出第一个值的姓名等于提供的姓名且关系为PARENT的元素，
-     * 然后映射结果以获取三元组的第三个值，该值在关系中代表子女。结果是所有匹配Person对象的列表。
+     * <p>该方法不再扫描全部关系，而是从按姓名和关系类型建立的邻接表中直接取出该人作为PARENT的所有关系的另一方，
+     * 耗时只与子女的数量成正比。返回的是一个新列表，调用方可以随意修改。
      */
     public List<Person> findAllChildrenOf(String name) {
-        return relations.stream()
-                .filter(x -> Objects.equals(x.getValue0().name, name)
-                        && x.getValue1() == Relationship.PARENT)
-                .map(Triplet::getValue2)
-                .collect(Collectors.toList());
+        return findAll(name, Relationship.PARENT);
+    }
+
+    public List<Person> findAllParentsOf(String name) {
+        return findAll(name, Relationship.CHILD);
+    }
+
+    List<Person> findAll(String name, Relationship relationship) {
+        Adjacency adjacency = index.get(name);
+        return adjacency == null ? new ArrayList<>() : adjacency.get(relationship);
     }
 
     // Triplet class requires javatuples。org.javatuples.Triplet 是来自 JavaTuples 库的一个类。JavaTuples 是一个开源的 Java 库，它提供了一些用于处理元组的类。元组是一种可以存储固定数量的项的数据结构，这些项可以是不同类型的。Triplet 类表示一个包含三个元素的元组。你可以使用它来存储三个相关联的对象，而不需要创建一个自定义的类。例如，你可以使用 Triplet 来存储一个人的名字、年龄和地址。
     private List<Triplet<Person, Relationship, Person>> relations =
             new ArrayList<>();
 
+    // the other side of every edge of one person, in the order they were added, and its kind:
+    // two arrays instead of a map of lists, since most people have only a few edges
+    private static final class Adjacency {
+        final Person person; // the first Person added under the name
+        private Person[] others = new Person[2];
+        private byte[] kinds = new byte[2];
+        private int size;
+
+        Adjacency(Person person) {
+            this.person = person;
+        }
+
+        void add(Relationship relationship, Person other) {
+            if (size == others.length) {
+                others = Arrays.copyOf(others, size * 2);
+                kinds = Arrays.copyOf(kinds, size * 2);
+            }
+            others[size] = other;
+            kinds[size++] = (byte) relationship.ordinal();
+        }
+
+        List<Person> get(Relationship relationship) {
+            List<Person> related = new ArrayList<>();
+            for (int i = 0; i < size; i++)
+                if (kinds[i] == relationship.ordinal())
+                    related.add(others[i]);
+            return related;
+        }
+    }
+
+    // per-person adjacency: name -> the other side of each edge
+    private Map<String, Adjacency> index = new HashMap<>();
+
+    // read-only, so that the adjacency index can't get out of sync with the relations
     public List<Triplet<Person, Relationship, Person>> getRelations() {
-        return relations;
+        return Collections.unmodifiableList(relations);
     }
 
+    // with a log, the log goes first and wins: an edge it refuses (a name it can't store, a
+    // failed write) throws before anything changes in memory
     public void addParentAndChild(Person parent, Person child) {
-        relations.add(new Triplet<>(parent, Relationship.PARENT, child));
-        relations.add(new Triplet<>(child, Relationship.CHILD, parent));
+        if (log != null)
+            log.append(parent.name, child.name);
+        add(parent, Relationship.PARENT, child);
+        add(child, Relationship.CHILD, parent);
+    }
+
+    private void add(Person from, Relationship relationship, Person to) {
+        relations.add(new Triplet<>(from, relationship, to));
+        index.computeIfAbsent(from.name, name -> new Adjacency(from)).add(relationship, to);
     }
 }
 
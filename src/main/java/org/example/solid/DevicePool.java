@@ -0,0 +1,313 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+enum Capability {
+    PRINT, SCAN, FAX
+}
+
+// devices registered with the capabilities they declare. A job goes to the least loaded device
+// that has its capability, and a device that runs out of work takes queued jobs it is capable of
+// from the back of other devices' queues. Routing only looks at the declared capabilities, so
+// devices are never tried and caught out (OldFashionedPrinter.scan throws an Exception).
+// Idle workers park until a job is queued for them or queued behind a busy device they could
+// take it from; jobs still queued when the pool closes fail with a RejectedExecutionException.
+class DevicePool implements AutoCloseable {
+    private static final class Job {
+        final Capability capability;
+        final Document document;
+        final CompletableFuture<Document> future = new CompletableFuture<>();
+
+        Job(Capability capability, Document document) {
+            this.capability = capability;
+            this.document = document;
+        }
+    }
+
+    final class Device {
+        final String name;
+        final Map<Capability, DeviceJob> actions;
+        final ConcurrentLinkedDeque<Job> queue = new ConcurrentLinkedDeque<>();
+        final AtomicInteger load = new AtomicInteger(); // queued and running jobs
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong stolen = new AtomicLong();
+        Thread worker;
+
+        Device(String name, Map<Capability, DeviceJob> actions) {
+            this.name = name;
+            this.actions = actions;
+        }
+
+        void work() {
+            try {
+                while (running || load.get() > 0) {
+                    Job job = queue.pollFirst();
+                    if (job == null)
+                        job = steal();
+                    if (job == null) {
+                        LockSupport.park(this); // until submit or close unparks us
+                        continue;
+                    }
+                    run(job);
+                }
+            } finally {
+                for (Job job; (job = queue.pollFirst()) != null; )
+                    reject(job);
+            }
+        }
+
+        // whatever the device throws, Errors included, fails this job only
+        private void run(Job job) {
+            try {
+                actions.get(job.capability).run(job.document);
+                job.future.complete(job.document);
+            } catch (Throwable e) {
+                job.future.completeExceptionally(e);
+            } finally {
+                load.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        }
+
+        private void reject(Job job) {
+            load.decrementAndGet();
+            job.future.completeExceptionally(new RejectedExecutionException("Device pool is closed"));
+        }
+
+        // the newest queued job of the most loaded other device that this one can run
+        private Job steal() {
+            Device victim = null;
+            for (Device other : devices)
+                if (other != this && other.load.get() > 1 && !other.queue.isEmpty()
+                        && (victim == null || other.load.get() > victim.load.get()))
+                    victim = other;
+            if (victim == null)
+                return null;
+            for (Iterator<Job> it = victim.queue.descendingIterator(); it.hasNext(); ) {
+                Job job = it.next();
+                if (actions.containsKey(job.capability) && victim.queue.removeLastOccurrence(job)) {
+                    victim.load.decrementAndGet();
+                    load.incrementAndGet();
+                    stolen.incrementAndGet();
+                    return job;
+                }
+            }
+            return null;
+        }
+
+        public Set<Capability> getCapabilities() {
+            return Collections.unmodifiableSet(actions.keySet());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %d jobs done, %d of them stolen", name, actions.keySet(),
+                    completed.get(), stolen.get());
+        }
+    }
+
+    private final List<Device> devices = new ArrayList<>(); // only added to before the first job
+    private final Map<Capability, Device[]> capable = new EnumMap<>(Capability.class);
+    private volatile boolean running = true;
+    private volatile boolean started;
+
+    public DevicePool registerPrinter(String name, Printer printer) {
+        return register(name, printer, Capability.PRINT);
+    }
+
+    public DevicePool registerScanner(String name, IScanner scanner) {
+        return register(name, scanner, Capability.SCAN);
+    }
+
+    /**
+     * Registers a Printer, IScanner or Machine for the given capabilities, which it has to
+     * be able to carry out: a Machine can be declared for FAX, a Printer can't.
+     */
+    public synchronized DevicePool register(String name, Object device, Capability... capabilities) {
+        if (started)
+            throw new IllegalStateException("Devices have to be registered before the first job");
+        Map<Capability, DeviceJob> actions = new EnumMap<>(Capability.class);
+        for (Capability capability : capabilities)
+            actions.put(capability, action(device, capability));
+        Device registered = new Device(name, actions);
+        devices.add(registered);
+        for (Capability capability : capabilities) {
+            List<Device> list = new ArrayList<>();
+            for (Device d : devices)
+                if (d.actions.containsKey(capability))
+                    list.add(d);
+            capable.put(capability, list.toArray(new Device[0]));
+        }
+        return this;
+    }
+
+    private static DeviceJob action(Object device, Capability capability) {
+        switch (capability) {
+            case PRINT:
+                if (device instanceof Printer)
+                    return ((Printer) device)::Print;
+                if (device instanceof Machine)
+                    return ((Machine) device)::print;
+                break;
+            case SCAN:
+                if (device instanceof IScanner)
+                    return ((IScanner) device)::Scan;
+                if (device instanceof Machine)
+                    return ((Machine) device)::scan;
+                break;
+            case FAX:
+                if (device instanceof Machine)
+                    return ((Machine) device)::fax;
+                break;
+        }
+        throw new IllegalArgumentException(device.getClass().getSimpleName() + " can't " + capability);
+    }
+
+    public boolean supports(Capability capability) {
+        return capable.containsKey(capability);
+    }
+
+    /**
+     * Queues the job on the least loaded capable device. Without one the future fails
+     * right away with an UnsupportedOperationException; check supports() to avoid that.
+     */
+    public CompletableFuture<Document> submit(Capability capability, Document document) {
+        start();
+        Job job = new Job(capability, document);
+        Device[] candidates = capable.get(capability);
+        if (candidates == null) {
+            job.future.completeExceptionally(new UnsupportedOperationException("No device can " + capability));
+            return job.future;
+        }
+        if (!running)
+            throw new IllegalStateException("Device pool is closed");
+        Device target = candidates[0];
+        for (int i = 1; i < candidates.length; i++)
+            if (candidates[i].load.get() < target.load.get())
+                target = candidates[i];
+        int load = target.load.incrementAndGet();
+        target.queue.addLast(job);
+        // the worker may have seen the pool closed before the job was queued
+        if (!running && target.queue.removeFirstOccurrence(job))
+            target.reject(job);
+        LockSupport.unpark(target.worker);
+        if (load > 1) // queued behind another job: an idle device could take it
+            for (Device other : candidates)
+                if (other.load.get() == 0)
+                    LockSupport.unpark(other.worker);
+        return job.future;
+    }
+
+    public List<Device> getDevices() {
+        return Collections.unmodifiableList(devices);
+    }
+
+    // finishes the queued jobs, then stops the workers
+    @Override
+    public void close() {
+        running = false;
+        for (Device device : devices) {
+            if (device.worker == null)
+                continue;
+            LockSupport.unpark(device.worker);
+            try {
+                device.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void start() {
+        if (started)
+            return;
+        synchronized (this) {
+            if (started)
+                return;
+            for (Device device : devices)
+                device.worker = DeviceThreads.start(device::work, "device-" + device.name);
+            started = true;
+        }
+    }
+}
+
+class DevicePoolDemo {
+    static void busy(long millis) {
+        AsyncMultiFunctionMachineDemo.sleep(millis);
+    }
+
+    public static void main(String[] args) throws Exception {
+        // what callers did before: try each device and catch the Exception of the ones that can't
+        Machine[] machines = {new OldFashionedPrinter(), new OldFashionedPrinter(), new MultiFunctionPrinter()};
+        int attempts = 1_000_000;
+        long start = System.nanoTime();
+        int routed = 0;
+        for (int i = 0; i < attempts; i++) {
+            for (Machine machine : machines) {
+                try {
+                    machine.scan(null);
+                    routed++;
+                    break;
+                } catch (Exception e) {
+                    // try the next one
+                }
+            }
+        }
+        System.out.printf("routing by exceptions: %d ns per job%n", (System.nanoTime() - start) / attempts);
+        Map<Capability, Machine> table = new EnumMap<>(Capability.class);
+        table.put(Capability.SCAN, machines[2]);
+        start = System.nanoTime();
+        for (int i = 0; i < attempts; i++) {
+            table.get(Capability.SCAN).scan(null);
+            routed++;
+        }
+        System.out.printf("routing by capability: %d ns per job (%d routed)%n",
+                (System.nanoTime() - start) / attempts, routed);
+
+        Machine everything = new Machine() {
+            public void print(Document d) {
+                busy(2);
+            }
+
+            public void fax(Document d) {
+                busy(3);
+            }
+
+            public void scan(Document d) {
+                busy(2);
+            }
+        };
+        try (DevicePool pool = new DevicePool()
+                .registerPrinter("fast printer", d -> busy(1))
+                .registerPrinter("slow printer", d -> busy(8))
+                .registerScanner("scanner", d -> busy(1))
+                .register("old printer", new OldFashionedPrinter(), Capability.PRINT)
+                .register("office machine", everything, Capability.PRINT, Capability.SCAN, Capability.FAX)) {
+            int jobs = 300;
+            CountDownLatch done = new CountDownLatch(jobs);
+            start = System.nanoTime();
+            for (int i = 0; i < jobs; i++) {
+                Capability capability = i % 10 == 0 ? Capability.FAX : i % 3 == 0 ? Capability.SCAN : Capability.PRINT;
+                pool.submit(capability, new Document()).whenComplete((d, e) -> done.countDown());
+            }
+            done.await();
+            System.out.printf("%d jobs in %d ms%n", jobs, (System.nanoTime() - start) / 1_000_000);
+            for (DevicePool.Device device : pool.getDevices())
+                System.out.println(device);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.example.solid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+// binary append-only log of parent/child edges, so that Relationships can be rebuilt after a
+// restart from one memory-mapped file instead of an external source.
+//
+// layout: file header (magic, version), then segments of
+//   segment header: int payload length, int record count
+//   payload:        records of (byte relationship, u16 length + UTF-8 name, u16 length + UTF-8 name)
+//   footer:         int magic, long CRC32 of header and payload
+// Records are buffered and written as one segment per commit(), or once segmentRecords have
+// been appended; records not committed yet are lost in a crash. On open, everything after the
+// first segment that is cut short or fails its checksum is a torn write and gets truncated.
+// Both the check on open and replay() read the file through memory mappings.
+class EdgeLog implements Closeable {
+    private static final int FILE_MAGIC = 0x524C4F47; // "RLOG"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    private static final int SEGMENT_HEADER = 8;
+    private static final int FOOTER_MAGIC = 0x5345474D; // "SEGM"
+    private static final int FOOTER = 12;
+    private static final int MAX_NAME = 0xFFFF;
+    private static final long MAP_WINDOW = 256L << 20;
+
+    public static final int DEFAULT_SEGMENT_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final int segmentRecords;
+    private final boolean sync;
+    private long end;     // where the next segment goes
+    private long records; // committed records
+
+    private byte[] pending = new byte[4096];
+    private int pendingLength;
+    private int pendingRecords;
+
+    private EdgeLog(FileChannel channel, int segmentRecords, boolean sync) {
+        this.channel = channel;
+        this.segmentRecords = segmentRecords;
+        this.sync = sync;
+    }
+
+    public static EdgeLog open(Path path) throws IOException {
+        return open(path, DEFAULT_SEGMENT_RECORDS, false);
+    }
+
+    /**
+     * Opens or creates a log. A segment is committed every segmentRecords appends;
+     * with sync set every commit is forced to the storage device.
+     */
+    public static EdgeLog open(Path path, int segmentRecords, boolean sync) throws IOException {
+        if (segmentRecords < 1)
+            throw new IllegalArgumentException("segmentRecords must be positive: " + segmentRecords);
+        return open(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), segmentRecords, sync);
+    }
+
+    // takes over the channel, closing it if the log can't be opened
+    static EdgeLog open(FileChannel channel, int segmentRecords, boolean sync) throws IOException {
+        EdgeLog log = new EdgeLog(channel, segmentRecords, sync);
+        try {
+            log.recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * Buffers one edge, committing the buffer once it holds segmentRecords. Either the edge is
+     * taken, or this throws and the log is as before: names that can't be stored are refused
+     * up front, and if the commit fails the edge is taken out of the buffer again.
+     */
+    public synchronized void append(String parent, String child) {
+        byte[] parentName = encode(parent);
+        byte[] childName = encode(child);
+        int start = pendingLength;
+        ensurePending(5 + parentName.length + childName.length);
+        pending[pendingLength++] = (byte) Relationship.PARENT.ordinal();
+        putName(parentName);
+        putName(childName);
+        pendingRecords++;
+        if (pendingRecords >= segmentRecords) {
+            try {
+                commit();
+            } catch (IOException e) {
+                pendingLength = start;
+                pendingRecords--;
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records as one checksummed segment. If that fails, whatever part of
+     * the segment reached the file is cut off again and the records stay buffered, so the next
+     * commit writes them at the same place.
+     */
+    public synchronized void commit() throws IOException {
+        if (pendingRecords == 0)
+            return;
+        ByteBuffer segment = ByteBuffer.allocate(SEGMENT_HEADER + pendingLength + FOOTER);
+        segment.putInt(pendingLength).putInt(pendingRecords).put(pending, 0, pendingLength);
+        CRC32 crc = new CRC32();
+        crc.update(segment.array(), 0, segment.position());
+        segment.putInt(FOOTER_MAGIC).putLong(crc.getValue());
+        segment.flip();
+        long position = end;
+        try {
+            while (segment.hasRemaining())
+                position += channel.write(segment, position);
+            if (sync)
+                channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(end);
+            } catch (IOException truncate) {
+                e.addSuppressed(truncate); // the next commit overwrites the torn bytes anyway
+            }
+            throw e;
+        }
+        end = position;
+        records += pendingRecords;
+        pendingLength = 0;
+        pendingRecords = 0;
+    }
+
+    /**
+     * Maps the committed part of the file and feeds every edge, in order, to the consumer.
+     */
+    public void replay(BiConsumer<String, String> parentAndChild) throws IOException {
+        replay(name -> name, parentAndChild);
+    }
+
+    /**
+     * The same, with every distinct name turned into a node once: names are looked up by their
+     * bytes in the mapping, and only decoded and passed to the factory the first time they appear.
+     */
+    public synchronized <T> void replay(Function<String, T> node, BiConsumer<T, T> parentAndChild)
+            throws IOException {
+        NameTable<T> names = new NameTable<>(node);
+        Mapping mapping = new Mapping(end);
+        long position = FILE_HEADER;
+        while (position < end) {
+            int length = mapping.slice(position, position + SEGMENT_HEADER).getInt(0);
+            long segmentEnd = position + SEGMENT_HEADER + length + FOOTER;
+            ByteBuffer records = mapping.slice(position, segmentEnd);
+            int count = records.getInt(4);
+            records.position(SEGMENT_HEADER).limit(SEGMENT_HEADER + length);
+            for (int i = 0; i < count; i++) {
+                byte kind = records.get();
+                T first = names.get(records);
+                T second = names.get(records);
+                if (kind == Relationship.PARENT.ordinal())
+                    parentAndChild.accept(first, second);
+            }
+            position = segmentEnd;
+        }
+    }
+
+    public synchronized long size() {
+        return end;
+    }
+
+    // records committed so far
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            commit();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // validates the header and the segments, truncating a torn tail
+    private void recover() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(FILE_MAGIC).putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+            end = FILE_HEADER;
+            return;
+        }
+        if (size < FILE_HEADER || readInt(0) != FILE_MAGIC || readInt(4) != VERSION)
+            throw new IOException("Not an edge log");
+
+        Mapping mapping = new Mapping(size);
+        long position = FILE_HEADER;
+        while (position + SEGMENT_HEADER + FOOTER <= size) {
+            int length = mapping.slice(position, position + SEGMENT_HEADER).getInt(0);
+            long footer = position + SEGMENT_HEADER + length;
+            if (length < 0 || footer + FOOTER > size)
+                break;
+            ByteBuffer segment = mapping.slice(position, footer + FOOTER);
+            CRC32 crc = new CRC32();
+            crc.update(segment.limit(SEGMENT_HEADER + length));
+            segment.limit(SEGMENT_HEADER + length + FOOTER);
+            if (segment.getInt() != FOOTER_MAGIC || segment.getLong() != crc.getValue())
+                break;
+            records += segment.getInt(4);
+            position = footer + FOOTER;
+        }
+        if (position < size)
+            channel.truncate(position);
+        end = position;
+    }
+
+    // read-only mappings of the file in windows of MAP_WINDOW bytes (or one segment, if bigger)
+    private final class Mapping {
+        private final long limit;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        Mapping(long limit) {
+            this.limit = limit;
+        }
+
+        // the bytes from start to end, positioned at 0
+        ByteBuffer slice(long start, long end) throws IOException {
+            if (window == null || start < windowStart || end > windowStart + window.capacity()) {
+                windowStart = start;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                        Math.min(limit - windowStart, Math.max(MAP_WINDOW, end - windowStart)));
+            }
+            ByteBuffer slice = window.duplicate();
+            slice.position((int) (start - windowStart)).limit((int) (end - windowStart));
+            return slice.slice();
+        }
+    }
+
+    // the nodes made for the names of one replay, in an open addressing table keyed by the
+    // name, so a name seen before costs a hash and a compare over the mapped UTF-8 bytes
+    private static final class NameTable<T> {
+        private final Function<String, T> factory;
+        private String[] names = new String[1024];
+        private int[] hashes = new int[1024];
+        private Object[] nodes = new Object[1024];
+        private int size;
+
+        NameTable(Function<String, T> factory) {
+            this.factory = factory;
+        }
+
+        // reads the name at the position of records and returns its node
+        @SuppressWarnings("unchecked")
+        T get(ByteBuffer records) {
+            int length = records.getShort() & 0xFFFF;
+            int offset = records.position();
+            int hash = 1;
+            for (int i = offset; i < offset + length; i++)
+                hash = 31 * hash + records.get(i);
+            hash ^= hash >>> 16;
+            int mask = names.length - 1;
+            int slot = hash & mask;
+            for (; names[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && equal(names[slot], records, offset, length)) {
+                    records.position(offset + length);
+                    return (T) nodes[slot];
+                }
+            }
+            String name = decode(records, offset, length);
+            records.position(offset + length);
+            T node = factory.apply(name);
+            names[slot] = name;
+            hashes[slot] = hash;
+            nodes[slot] = node;
+            if (++size * 2 > names.length)
+                grow();
+            return node;
+        }
+
+        // ASCII names are compared char by byte, anything else is decoded first
+        private static boolean equal(String name, ByteBuffer records, int offset, int length) {
+            if (name.length() > length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                byte b = records.get(offset + i);
+                if (b < 0)
+                    return name.equals(decode(records, offset, length));
+                if (i >= name.length() || name.charAt(i) != b)
+                    return false;
+            }
+            return name.length() == length;
+        }
+
+        private static String decode(ByteBuffer records, int offset, int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = records.get(offset + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void grow() {
+            String[] oldNames = names;
+            int[] oldHashes = hashes;
+            Object[] oldNodes = nodes;
+            names = new String[oldNames.length * 2];
+            hashes = new int[names.length];
+            nodes = new Object[names.length];
+            int mask = names.length - 1;
+            for (int i = 0; i < oldNames.length; i++) {
+                if (oldNames[i] == null)
+                    continue;
+                int slot = oldHashes[i] & mask;
+                while (names[slot] != null)
+                    slot = (slot + 1) & mask;
+                names[slot] = oldNames[i];
+                hashes[slot] = oldHashes[i];
+                nodes[slot] = oldNodes[i];
+            }
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of edge log at " + position);
+        return buffer.getInt(0);
+    }
+
+    private static byte[] encode(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("The edge log can't store a person without a name");
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME)
+            throw new IllegalArgumentException("Name too long for the edge log: " + bytes.length + " bytes");
+        return bytes;
+    }
+
+    private void putName(byte[] name) {
+        pending[pendingLength++] = (byte) (name.length >>> 8);
+        pending[pendingLength++] = (byte) name.length;
+        System.arraycopy(name, 0, pending, pendingLength, name.length);
+        pendingLength += name.length;
+    }
+
+    private void ensurePending(int more) {
+        if (pendingLength + more > pending.length)
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + more));
+    }
+}
+
+class EdgeLogDemo {
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("relationships", ".log");
+        int families = 1_000_000;
+
+        long start = System.nanoTime();
+        try (EdgeLog log = EdgeLog.open(file)) {
+            Relationships relationships = new Relationships(log);
+            for (int i = 0; i < families; i++)
+                relationships.addParentAndChild(new Person("Parent " + i), new Person("Child " + i));
+        }
+        System.out.printf("wrote %d relationships (%d MB) in %d ms%n",
+                families, Files.size(file) >> 20, (System.nanoTime() - start) / 1_000_000);
+
+        // simulate a crash in the middle of writing a segment
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 0, 0}), channel.size());
+        }
+
+        start = System.nanoTime();
+        try (EdgeLog log = EdgeLog.open(file)) {
+            Relationships relationships = new Relationships(log);
+            System.out.printf("reloaded %d edges in %d ms%n",
+                    relationships.getRelations().size(), (System.nanoTime() - start) / 1_000_000);
+            for (Person child : relationships.findAllChildrenOf("Parent 42"))
+                System.out.println("Parent 42 has a child called " + child.name);
+        }
+        Files.delete(file);
+    }
+}
@@ -1,6 +1,46 @@
 package org.example.solid;
 
-class Document {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// content is kept in pages from a PagePool. The document owns one reference to each of its
+// pages; documents made by share() hold their own references to the same pages.
+class Document implements AutoCloseable {
+    private final List<Page> pages = new ArrayList<>();
+
+    /**
+     * Adds a page, taking over the caller's reference to it.
+     */
+    public void addPage(Page page) {
+        pages.add(page);
+    }
+
+    public List<Page> getPages() {
+        return Collections.unmodifiableList(pages);
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Another document with the same pages, without copying them.
+     */
+    public Document share() {
+        Document copy = new Document();
+        for (Page page : pages)
+            copy.pages.add(page.retain());
+        return copy;
+    }
+
+    // gives the pages back; they return to their pool once no other document holds them
+    @Override
+    public void close() {
+        for (Page page : pages)
+            page.release();
+        pages.clear();
+    }
 }
 
 interface Machine {
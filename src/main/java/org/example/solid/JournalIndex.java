@@ -0,0 +1,344 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// ascending entry numbers, stored as varint-encoded gaps. Journal numbers only grow, so adding
+// is an append at the end; anything else re-encodes the list. Numbers are removed in bulk.
+class PostingList {
+    private byte[] data = new byte[8];
+    private int length;
+    private int count;
+    private int last;
+
+    public void add(int number) {
+        if (count > 0 && number <= last) {
+            int[] numbers = toArray();
+            int i = Arrays.binarySearch(numbers, number);
+            if (i >= 0)
+                return;
+            int[] inserted = new int[numbers.length + 1];
+            System.arraycopy(numbers, 0, inserted, 0, -i - 1);
+            inserted[-i - 1] = number;
+            System.arraycopy(numbers, -i - 1, inserted, -i, numbers.length + i + 1);
+            encode(inserted, inserted.length);
+            return;
+        }
+        putVarint(number - last);
+        last = number;
+        count++;
+    }
+
+    /**
+     * Removes every number that is set in the bitmap, re-encoding the list once.
+     */
+    public void removeAll(BitSet numbers) {
+        int[] kept = toArray();
+        int n = 0;
+        for (int number : kept)
+            if (!numbers.get(number))
+                kept[n++] = number;
+        if (n < count)
+            encode(kept, n);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // encoded size in bytes
+    public int bytes() {
+        return length;
+    }
+
+    public int[] toArray() {
+        int[] numbers = new int[count];
+        int position = 0, number = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = 0, shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            number += gap;
+            numbers[i] = number;
+        }
+        return numbers;
+    }
+
+    private void encode(int[] numbers, int n) {
+        length = 0;
+        count = 0;
+        last = 0;
+        for (int i = 0; i < n; i++) {
+            putVarint(numbers[i] - last);
+            last = numbers[i];
+            count++;
+        }
+    }
+
+    private void putVarint(int value) {
+        if (length + 5 > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+}
+
+// inverted index from lower-cased words to the numbers of the entries containing them.
+// A query only touches the posting lists of its terms, never the entries that don't match.
+// The index holds numbers only and gets the entries from the journal. Removing an entry just
+// clears its bit in the live bitmap, which queries check; the posting lists are purged of
+// removed numbers in one pass once there are more of them than live entries.
+class JournalIndex {
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final IntFunction<String> entries;
+    private final BitSet live = new BitSet();  // numbers of the indexed entries
+    private final BitSet stale = new BitSet(); // removed numbers still in posting lists
+    private int liveCount;
+    private int staleCount;
+
+    /**
+     * An index over entries that the given function returns by number.
+     */
+    JournalIndex(IntFunction<String> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Indexes an entry in the "N: text" format; entries without a number are ignored.
+     */
+    public void add(String entry) {
+        int number = number(entry);
+        if (number < 0 || live.get(number))
+            return;
+        if (stale.get(number))
+            purge(); // the number comes back with other words
+        live.set(number);
+        liveCount++;
+        for (String token : tokens(entry))
+            postings.computeIfAbsent(token, t -> new PostingList()).add(number);
+    }
+
+    public void remove(String entry) {
+        int number = number(entry);
+        if (number < 0 || !live.get(number))
+            return;
+        live.clear(number);
+        liveCount--;
+        stale.set(number);
+        if (++staleCount > liveCount)
+            purge();
+    }
+
+    public void clear() {
+        postings.clear();
+        live.clear();
+        stale.clear();
+        liveCount = staleCount = 0;
+    }
+
+    /**
+     * Entries containing all of the terms, in entry number order.
+     */
+    public List<String> all(String... terms) {
+        if (terms.length == 0)
+            return new ArrayList<>();
+        List<PostingList> lists = new ArrayList<>();
+        for (String term : terms) {
+            PostingList list = postings.get(normalize(term));
+            if (list == null)
+                return new ArrayList<>();
+            lists.add(list);
+        }
+        // start from the shortest list so every step can only shrink the candidates
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        int[] result = lists.get(0).toArray();
+        int n = result.length;
+        for (int l = 1; l < lists.size() && n > 0; l++) {
+            int[] other = lists.get(l).toArray();
+            int kept = 0;
+            for (int i = 0, j = 0; i < n && j < other.length; ) {
+                if (result[i] < other[j])
+                    i++;
+                else if (result[i] > other[j])
+                    j++;
+                else {
+                    result[kept++] = result[i++];
+                    j++;
+                }
+            }
+            n = kept;
+        }
+        return lookup(result, n);
+    }
+
+    /**
+     * Entries containing any of the terms, in entry number order.
+     */
+    public List<String> any(String... terms) {
+        int[] result = new int[0];
+        for (String term : terms) {
+            PostingList list = postings.get(normalize(term));
+            if (list == null)
+                continue;
+            int[] other = list.toArray();
+            int[] merged = new int[result.length + other.length];
+            int n = 0, i = 0, j = 0;
+            while (i < result.length || j < other.length) {
+                if (j == other.length || (i < result.length && result[i] < other[j]))
+                    merged[n++] = result[i++];
+                else if (i == result.length || other[j] < result[i])
+                    merged[n++] = other[j++];
+                else {
+                    merged[n++] = result[i++];
+                    j++;
+                }
+            }
+            result = Arrays.copyOf(merged, n);
+        }
+        return lookup(result, result.length);
+    }
+
+    public int terms() {
+        return postings.size();
+    }
+
+    // encoded size of all posting lists in bytes
+    public long postingBytes() {
+        long bytes = 0;
+        for (PostingList list : postings.values())
+            bytes += list.bytes();
+        return bytes;
+    }
+
+    // removed numbers that are still in posting lists
+    int staleNumbers() {
+        return staleCount;
+    }
+
+    private void purge() {
+        for (Iterator<PostingList> it = postings.values().iterator(); it.hasNext(); ) {
+            PostingList list = it.next();
+            list.removeAll(stale);
+            if (list.isEmpty())
+                it.remove();
+        }
+        stale.clear();
+        staleCount = 0;
+    }
+
+    private List<String> lookup(int[] numbers, int n) {
+        List<String> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            if (live.get(numbers[i]))
+                result.add(entries.apply(numbers[i]));
+        return result;
+    }
+
+    // the number of an entry in the "N: text" format, or -1; see JournalLoader.entryNumber
+    static int number(String entry) {
+        long number = 0;
+        int i = 0;
+        while (i < entry.length() && i < 10 && entry.charAt(i) >= '0' && entry.charAt(i) <= '9')
+            number = number * 10 + (entry.charAt(i++) - '0');
+        if (i == 0 || number > Integer.MAX_VALUE || i + 1 >= entry.length()
+                || entry.charAt(i) != ':' || entry.charAt(i + 1) != ' ')
+            return -1;
+        return (int) number;
+    }
+
+    // the words of the text after the "N: " prefix, without duplicates
+    static Set<String> tokens(String entry) {
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = entry.indexOf(": ") + 2;
+        for (int i = start; i < entry.length(); ) {
+            while (i < entry.length() && !Character.isLetterOrDigit(entry.charAt(i)))
+                i++;
+            int end = i;
+            while (end < entry.length() && Character.isLetterOrDigit(entry.charAt(end)))
+                end++;
+            if (end > i) {
+                tokens.add(entry.substring(i, end).toLowerCase(Locale.ROOT));
+            }
+            i = end;
+        }
+        return tokens;
+    }
+
+    private static String normalize(String term) {
+        return term.toLowerCase(Locale.ROOT);
+    }
+}
+
+class JournalIndexDemo {
+    public static void main(String[] args) {
+        Journal journal = new Journal();
+        journal.enableSearch();
+        Random random = new Random(42);
+        String[] moods = {"happy", "sad", "tired", "hungry", "bored", "excited", "sleepy", "grumpy"};
+        String[] foods = {"bug", "apple", "pizza", "noodles", "cake", "soup", "rice", "bread"};
+        long start = System.nanoTime();
+        for (int i = 0; i < 300_000; i++)
+            journal.addEntry("Today I was " + moods[random.nextInt(moods.length)] + " and ate a "
+                    + foods[random.nextInt(foods.length)] + " at place " + random.nextInt(5000));
+        System.out.printf("added %d entries with indexing in %d ms%n",
+                journal.getEntries().size(), (System.nanoTime() - start) / 1_000_000);
+
+        int rounds = 20;
+        Pattern pattern = Pattern.compile("(?im)^.*\\bsad\\b.*\\bpizza\\b.*$");
+        start = System.nanoTime();
+        int matches = 0;
+        for (int r = 0; r < rounds; r++) {
+            matches = 0;
+            Matcher m = pattern.matcher(journal.toString());
+            while (m.find())
+                matches++;
+        }
+        System.out.printf("regex over toString(): %d matches, %d us per query%n",
+                matches, (System.nanoTime() - start) / rounds / 1000);
+
+        start = System.nanoTime();
+        List<String> found = null;
+        for (int r = 0; r < rounds; r++)
+            found = journal.searchAll("sad", "pizza");
+        System.out.printf("inverted index AND: %d matches, %d us per query%n",
+                found.size(), (System.nanoTime() - start) / rounds / 1000);
+
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            found = journal.searchAny("4999", "4998");
+        System.out.printf("inverted index OR: %d matches, %d us per query%n",
+                found.size(), (System.nanoTime() - start) / rounds / 1000);
+
+        start = System.nanoTime();
+        for (int i = 0; i < 1000; i++)
+            journal.removeEntry(journal.getEntries().size() - 1);
+        System.out.printf("removed 1000 entries in %d us%n", (System.nanoTime() - start) / 1000);
+
+        journal.removeEntry(0);
+        System.out.println(journal.searchAny("4999").get(0));
+    }
+}
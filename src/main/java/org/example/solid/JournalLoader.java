@@ -0,0 +1,196 @@
+package org.example.solid;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// loads journals saved as "N: text" lines. The file is memory-mapped and cut into chunks at
+// line boundaries, the chunks are parsed in parallel and the results are joined in file order.
+// A line that doesn't start with "N: " continues the entry before it (an entry whose text
+// contained a line break), also across chunk boundaries.
+class JournalLoader {
+    // a single mapping can't exceed 2 GB, so bigger files get more chunks
+    private static final long MAX_CHUNK = Integer.MAX_VALUE;
+
+    private final ForkJoinPool pool;
+
+    public JournalLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public JournalLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // entries parsed from one chunk
+    static class Chunk {
+        final List<String> leading = new ArrayList<>(); // continuation lines before the first entry
+        final List<String> entries = new ArrayList<>();
+        int maxNumber;
+
+        void line(String line, int number) {
+            if (number < 0) {
+                if (entries.isEmpty())
+                    leading.add(line);
+                else
+                    entries.set(entries.size() - 1,
+                            entries.get(entries.size() - 1) + System.lineSeparator() + line);
+            } else {
+                entries.add(line);
+                maxNumber = Math.max(maxNumber, number);
+            }
+        }
+    }
+
+    /**
+     * Replaces the entries of the journal with the ones in the file and moves the
+     * entry counter past the highest entry number found.
+     */
+    public void load(Journal journal, Path path) throws IOException {
+        journal.restore(read(path));
+    }
+
+    // the entries in the file and the highest entry number among them
+    Journal.Loaded read(Path path) throws IOException {
+        List<Chunk> chunks;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = split(channel);
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                tasks.add(pool.submit(() -> parse(buffer)));
+            }
+            chunks = new ArrayList<>();
+            for (ForkJoinTask<Chunk> task : tasks)
+                chunks.add(task.join());
+        }
+        return join(chunks);
+    }
+
+    static Journal.Loaded join(List<Chunk> chunks) {
+        List<String> entries = new ArrayList<>();
+        int maxNumber = 0;
+        for (Chunk chunk : chunks) {
+            for (String line : chunk.leading) {
+                if (entries.isEmpty()) {
+                    if (!line.isEmpty()) // an empty journal is saved as one empty line
+                        entries.add(line);
+                } else
+                    entries.set(entries.size() - 1, entries.get(entries.size() - 1) + System.lineSeparator() + line);
+            }
+            entries.addAll(chunk.entries);
+            maxNumber = Math.max(maxNumber, chunk.maxNumber);
+        }
+        return new Journal.Loaded(entries, maxNumber);
+    }
+
+    // chunk start offsets plus the file size; every chunk but the last ends right after a '\n'
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parts = (int) Math.max(pool.getParallelism(), (size + MAX_CHUNK / 2 - 1) / (MAX_CHUNK / 2));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        for (int i = 1; i < parts; i++) {
+            long position = Math.max(size / parts * i, bounds.get(bounds.size() - 1));
+            long boundary = -1;
+            while (boundary < 0 && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0)
+                    break;
+                for (int k = 0; k < read; k++)
+                    if (probe.get(k) == '\n') {
+                        boundary = position + k + 1;
+                        break;
+                    }
+                position += read;
+            }
+            if (boundary < 0 || boundary >= size)
+                break;
+            if (boundary > bounds.get(bounds.size() - 1))
+                bounds.add(boundary);
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = bounds.get(i);
+        return result;
+    }
+
+    static Chunk parse(ByteBuffer buffer) {
+        Chunk chunk = new Chunk();
+        byte[] line = new byte[256];
+        int limit = buffer.limit();
+        int start = 0;
+        while (start < limit) {
+            int end = start;
+            while (end < limit && buffer.get(end) != '\n')
+                end++;
+            int length = end - start;
+            if (length > 0 && buffer.get(end - 1) == '\r')
+                length--;
+            if (length > line.length)
+                line = new byte[Math.max(length, line.length * 2)];
+            for (int i = 0; i < length; i++)
+                line[i] = buffer.get(start + i);
+            chunk.line(new String(line, 0, length, StandardCharsets.UTF_8), entryNumber(line, length));
+            start = end + 1;
+        }
+        return chunk;
+    }
+
+    // the N of a line starting with "N: ", or -1
+    static int entryNumber(byte[] line, int length) {
+        long number = 0;
+        int i = 0;
+        while (i < length && i < 10 && line[i] >= '0' && line[i] <= '9')
+            number = number * 10 + (line[i++] - '0');
+        if (i == 0 || number > Integer.MAX_VALUE || i + 1 >= length || line[i] != ':' || line[i + 1] != ' ')
+            return -1;
+        return (int) number;
+    }
+}
+
+class JournalLoaderDemo {
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("journal", ".txt");
+        try (PrintStream out = new PrintStream(file.toFile(), "UTF-8")) {
+            for (int i = 1; i <= 2_000_000; i++)
+                out.println(i + ": Dear diary, entry number " + i + " of a very long journal");
+        }
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int lines = 0;
+            for (String line : Files.readAllLines(file))
+                if (!line.isEmpty())
+                    lines++;
+            long sequential = System.nanoTime() - start;
+
+            Journal journal = new Journal();
+            start = System.nanoTime();
+            new Persistence().load(journal, file.toString());
+            long parallel = System.nanoTime() - start;
+            System.out.printf("line by line: %d lines in %d ms, mapped parallel: %d entries in %d ms%n",
+                    lines, sequential / 1_000_000, journal.getEntries().size(), parallel / 1_000_000);
+        }
+
+        Journal journal = new Journal();
+        journal.load(file.toString());
+        journal.addEntry("the counter continues after the loaded entries");
+        List<String> entries = journal.getEntries();
+        System.out.println(entries.get(entries.size() - 1));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,244 @@
+package org.example.solid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// when appended entries are forced to the storage device
+enum FsyncPolicy {
+    ALWAYS,   // before append returns: nothing acknowledged is lost in a crash
+    INTERVAL, // by a background thread once per interval if anything was written: a crash loses
+              // at most what was appended in the last interval
+    NEVER     // left to the operating system
+}
+
+// append-only journal sink: every entry is written once, at the end of the file, in the same
+// line format as Persistence.saveToFile. Concurrent appends are group committed: whoever gets
+// the write lock writes (and syncs) everything queued so far in one gathering write, and the
+// threads whose entries went out with it return without writing anything themselves.
+class JournalWriter implements Closeable {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final long intervalNanos;
+
+    private final Object queueLock = new Object();
+    private List<byte[]> queue = new ArrayList<>(); // guarded by queueLock
+    private long enqueued;                          // guarded by queueLock
+
+    private final Object writeLock = new Object();
+    private long written;                           // guarded by writeLock
+    private long synced;                            // guarded by writeLock
+    private long lastSync = System.nanoTime();      // guarded by writeLock
+    private IOException failure;                    // guarded by writeLock
+    private boolean closed;                         // guarded by writeLock
+    private final Thread syncer;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    public JournalWriter(Path path, FsyncPolicy policy, long intervalMillis) throws IOException {
+        if (policy == FsyncPolicy.INTERVAL && intervalMillis <= 0)
+            throw new IllegalArgumentException("interval must be positive: " + intervalMillis);
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.policy = policy;
+        this.intervalNanos = intervalMillis * 1_000_000;
+        if (policy == FsyncPolicy.INTERVAL) {
+            syncer = new Thread(this::syncLoop, "journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    public JournalWriter(Path path, FsyncPolicy policy) throws IOException {
+        this(path, policy, 1000);
+    }
+
+    /**
+     * Appends one entry as a line. Returns once the entry has been written,
+     * and synced if the policy says so.
+     */
+    public void append(String entry) throws IOException {
+        byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+        long ticket;
+        synchronized (queueLock) {
+            queue.add(bytes);
+            ticket = ++enqueued;
+        }
+        synchronized (writeLock) {
+            if (failure != null)
+                throw new IOException("Journal writer failed earlier", failure);
+            if (closed)
+                throw new IOException("Journal writer is closed");
+            if (written >= ticket)
+                return; // went out with an earlier group
+            try {
+                commit();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    public long getWritten() {
+        synchronized (writeLock) {
+            return written;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed)
+                return;
+            closed = true;
+            writeLock.notifyAll();
+            try {
+                if (failure == null) {
+                    commit();
+                    if (policy != FsyncPolicy.NEVER)
+                        sync();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+        if (syncer != null) {
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // INTERVAL: forces what has been written once the interval since the last sync is over,
+    // so entries reach the device even if no further append comes along
+    private void syncLoop() {
+        synchronized (writeLock) {
+            while (!closed && failure == null) {
+                long wait = lastSync + intervalNanos - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(writeLock, wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+                if (written > synced) {
+                    try {
+                        sync();
+                    } catch (IOException e) {
+                        failure = e; // the next append reports it
+                    }
+                } else {
+                    lastSync = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    // called with writeLock held
+    private void sync() throws IOException {
+        channel.force(false);
+        lastSync = System.nanoTime();
+        synced = written;
+        syncs.incrementAndGet();
+    }
+
+    // called with writeLock held
+    private void commit() throws IOException {
+        List<byte[]> batch;
+        long upTo;
+        synchronized (queueLock) {
+            batch = queue;
+            upTo = enqueued;
+            queue = new ArrayList<>();
+        }
+        if (batch.isEmpty())
+            return;
+        ByteBuffer[] buffers = new ByteBuffer[batch.size() * 2];
+        for (int i = 0; i < batch.size(); i++) {
+            buffers[2 * i] = ByteBuffer.wrap(batch.get(i));
+            buffers[2 * i + 1] = ByteBuffer.wrap(LINE_SEPARATOR);
+        }
+        int first = 0;
+        while (first < buffers.length) {
+            channel.write(buffers, first, buffers.length - first);
+            while (first < buffers.length && !buffers[first].hasRemaining())
+                first++;
+        }
+        written = upTo;
+        if (policy == FsyncPolicy.ALWAYS)
+            sync();
+        commits.incrementAndGet();
+    }
+}
+
+class JournalWriterDemo {
+    public static void main(String[] args) throws Exception {
+        int threads = 8;
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            int perThread = policy == FsyncPolicy.ALWAYS ? 500 : 20_000;
+            Path file = Files.createTempFile("journal", ".txt");
+            long[][] latencies = new long[threads][perThread];
+            long start;
+            JournalWriter writer = new JournalWriter(file, policy, 100);
+            try {
+                CountDownLatch done = new CountDownLatch(threads);
+                start = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    new Thread(() -> {
+                        try {
+                            for (int i = 0; i < perThread; i++) {
+                                long before = System.nanoTime();
+                                writer.append(thread + "-" + i + ": Dear diary, today I wrote entry " + i);
+                                latencies[thread][i] = System.nanoTime() - before;
+                            }
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        } finally {
+                            done.countDown();
+                        }
+                    }).start();
+                }
+                done.await();
+            } finally {
+                writer.close();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("%-8s %,9d entries/s, %,d group commits, %,d syncs, latency p50 %,d us, p99 %,d us%n",
+                    policy, (long) all.length * 1_000_000_000L / elapsed, writer.getCommits(), writer.getSyncs(),
+                    all[all.length / 2] / 1000, all[all.length * 99 / 100] / 1000);
+            Files.delete(file);
+        }
+    }
+}
@@ -51,6 +51,12 @@ interface Specification<T> {
 
 interface Filter<T> {
     Stream<T> filter(List<T> items, Specification<T> spec);
+
+    // filter streams are lazy, so offset/limit stop the scan as soon as the page is full;
+    // implementations that can skip ranges of the input should override this
+    default Stream<T> query(List<T> items, Query<T> query) {
+        return query.collect(filter(items, query.getSpecification()).iterator()).stream();
+    }
 }
 
 // 为每个过滤条件创建一个实现了Specification接口的类
@@ -61,6 +67,10 @@ class ColorSpecification implements Specification<Product> {
         this.color = color;
     }
 
+    public Color getColor() {
+        return color;
+    }
+
     @Override
     public boolean isSatisfied(Product p) {
         return p.color == color;
@@ -74,6 +84,10 @@ class SizeSpecification implements Specification<Product> {
         this.size = size;
     }
 
+    public Size getSize() {
+        return size;
+    }
+
     @Override
     public boolean isSatisfied(Product p) {
         return p.size == size;
@@ -88,6 +102,14 @@ class AndSpecification<T> implements Specification<T> {
         this.second = second;
     }
 
+    public Specification<T> getFirst() {
+        return first;
+    }
+
+    public Specification<T> getSecond() {
+        return second;
+    }
+
     @Override
     public boolean isSatisfied(T item) {
         return first.isSatisfied(item) && second.isSatisfied(item);
@@ -95,6 +117,45 @@ class AndSpecification<T> implements Specification<T> {
 
 }
 
+class OrSpecification<T> implements Specification<T> {
+    private Specification<T> first, second;
+
+    public OrSpecification(Specification<T> first, Specification<T> second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public Specification<T> getFirst() {
+        return first;
+    }
+
+    public Specification<T> getSecond() {
+        return second;
+    }
+
+    @Override
+    public boolean isSatisfied(T item) {
+        return first.isSatisfied(item) || second.isSatisfied(item);
+    }
+}
+
+class NotSpecification<T> implements Specification<T> {
+    private Specification<T> spec;
+
+    public NotSpecification(Specification<T> spec) {
+        this.spec = spec;
+    }
+
+    public Specification<T> getSpec() {
+        return spec;
+    }
+
+    @Override
+    public boolean isSatisfied(T item) {
+        return !spec.isSatisfied(item);
+    }
+}
+
 class BetterFilter implements Filter<Product> {
     @Override
     public Stream<Product> filter(List<Product> items, Specification<Product> spec) {
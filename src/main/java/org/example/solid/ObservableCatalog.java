@@ -0,0 +1,226 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+interface CatalogListener {
+    void productAdded(Product p);
+
+    void productRemoved(Product p);
+
+    void productChanged(Product p);
+}
+
+// a product catalog that tells its listeners about every change.
+// Products are tracked by identity (Product doesn't override equals).
+// Not thread-safe: all mutations and view reads are expected on one thread.
+class ObservableCatalog {
+    private final Map<Product, Long> products = new LinkedHashMap<>(); // to the order they were added in
+    private final List<CatalogListener> listeners = new ArrayList<>();
+    private long added;
+
+    public boolean add(Product p) {
+        if (products.putIfAbsent(p, added) != null)
+            return false;
+        added++;
+        for (CatalogListener listener : listeners)
+            listener.productAdded(p);
+        return true;
+    }
+
+    public boolean remove(Product p) {
+        if (products.remove(p) == null)
+            return false;
+        for (CatalogListener listener : listeners)
+            listener.productRemoved(p);
+        return true;
+    }
+
+    /**
+     * Applies the change to a product of the catalog and lets the listeners re-evaluate it.
+     */
+    public void update(Product p, Consumer<Product> change) {
+        positionOf(p); // a product of another catalog is left alone
+        change.accept(p);
+        changed(p);
+    }
+
+    /**
+     * Must be called after modifying the fields of a product directly.
+     */
+    public void changed(Product p) {
+        positionOf(p);
+        for (CatalogListener listener : listeners)
+            listener.productChanged(p);
+    }
+
+    public Set<Product> getProducts() {
+        return Collections.unmodifiableSet(products.keySet());
+    }
+
+    // where the product stands in the catalog's order
+    long positionOf(Product p) {
+        Long position = products.get(p);
+        if (position == null)
+            throw new IllegalArgumentException("Product " + p.name + " is not in the catalog");
+        return position;
+    }
+
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CatalogListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a live view: its results are computed once from the current products
+     * and from then on kept up to date by the catalog's notifications.
+     */
+    public CatalogView registerView(Specification<Product> spec) {
+        CatalogView view = new CatalogView(spec, this::positionOf);
+        for (Product p : products.keySet())
+            view.productAdded(p);
+        addListener(view);
+        return view;
+    }
+
+    public void unregisterView(CatalogView view) {
+        removeListener(view);
+    }
+}
+
+// a materialized query result: reads cost O(result) instead of a scan of the catalog.
+// Results are kept in catalog order, also for products that only start matching later.
+class CatalogView implements CatalogListener {
+    private final Specification<Product> spec;
+    private final ToLongFunction<Product> catalogPosition;
+    private final Map<Product, Long> positions = new HashMap<>(); // of the results
+    private final Set<Product> results = new TreeSet<>(Comparator.comparingLong(positions::get));
+
+    CatalogView(Specification<Product> spec, ToLongFunction<Product> catalogPosition) {
+        this.spec = spec;
+        this.catalogPosition = catalogPosition;
+    }
+
+    public Specification<Product> getSpecification() {
+        return spec;
+    }
+
+    public Set<Product> getResults() {
+        return Collections.unmodifiableSet(results);
+    }
+
+    public Stream<Product> stream() {
+        return results.stream();
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public void productAdded(Product p) {
+        if (spec.isSatisfied(p))
+            include(p);
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        exclude(p);
+    }
+
+    @Override
+    public void productChanged(Product p) {
+        if (spec.isSatisfied(p))
+            include(p);
+        else
+            exclude(p);
+    }
+
+    private void include(Product p) {
+        if (positions.putIfAbsent(p, catalogPosition.applyAsLong(p)) == null)
+            results.add(p);
+    }
+
+    // the set is ordered by positions, so the product leaves it before its position goes
+    private void exclude(Product p) {
+        if (positions.containsKey(p)) {
+            results.remove(p);
+            positions.remove(p);
+        }
+    }
+}
+
+class ObservableCatalogDemo {
+    public static void main(String[] args) {
+        ObservableCatalog catalog = new ObservableCatalog();
+        Product apple = new Product("Apple", Color.GREEN, Size.SMALL);
+        Product tree = new Product("Tree", Color.GREEN, Size.LARGE);
+        Product house = new Product("House", Color.BLUE, Size.LARGE);
+        catalog.add(apple);
+        catalog.add(tree);
+        catalog.add(house);
+
+        CatalogView green = catalog.registerView(new ColorSpecification(Color.GREEN));
+        CatalogView large = catalog.registerView(new SizeSpecification(Size.LARGE));
+        print("Green", green);
+        print("Large", large);
+
+        catalog.update(apple, p -> p.size = Size.LARGE);
+        catalog.remove(tree);
+        System.out.println("After growing the apple and cutting down the tree:");
+        print("Green", green);
+        print("Large", large);
+
+        // the same query repeated over a big, slowly changing catalog
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            Product p = new Product("Product " + i,
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]);
+            products.add(p);
+            catalog.add(p);
+        }
+        Specification<Product> largeBlue = new AndSpecification<>(
+                new ColorSpecification(Color.BLUE),
+                new SizeSpecification(Size.LARGE));
+        CatalogView view = catalog.registerView(largeBlue);
+        BetterFilter bf = new BetterFilter();
+
+        long start = System.nanoTime();
+        long scanned = 0;
+        for (int i = 0; i < 20; i++)
+            scanned = bf.filter(products, largeBlue).count();
+        long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long viewed = 0;
+        for (int i = 0; i < 20; i++) {
+            catalog.update(products.get(random.nextInt(products.size())), p -> p.color = Color.BLUE);
+            viewed = view.size();
+        }
+        long viewTime = System.nanoTime() - start;
+        System.out.printf("20 queries: scanning %d ms (%d found), view %d ms (%d found)%n",
+                scanTime / 1_000_000, scanned, viewTime / 1_000_000, viewed);
+    }
+
+    private static void print(String title, CatalogView view) {
+        System.out.println(title + ":");
+        view.stream().forEach(p -> System.out.println(" - " + p.name));
+    }
+}
@@ -0,0 +1,234 @@
+package org.example.solid;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// a reference counted page of document content in a direct buffer. Whoever gets a page from
+// the pool holds one reference; retain() adds one and release() drops one, and the buffer
+// goes back to the pool when the last one is dropped.
+class Page {
+    private final PagePool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    Page(PagePool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * The buffer to fill, positioned at the end of what has been written so far.
+     */
+    public ByteBuffer writable() {
+        checkLive();
+        return buffer;
+    }
+
+    /**
+     * A read-only view of what has been written; it shares the buffer, nothing is copied.
+     */
+    public ByteBuffer content() {
+        checkLive();
+        ByteBuffer content = buffer.asReadOnlyBuffer();
+        content.flip();
+        return content;
+    }
+
+    public int length() {
+        checkLive();
+        return buffer.position();
+    }
+
+    // a released page never comes back to life: its buffer may already belong to another page
+    public Page retain() {
+        for (;;) {
+            int count = references.get();
+            if (count <= 0)
+                throw new IllegalStateException("Page was already released");
+            if (references.compareAndSet(count, count + 1))
+                return this;
+        }
+    }
+
+    public void release() {
+        for (;;) {
+            int count = references.get();
+            if (count <= 0)
+                throw new IllegalStateException("Page released more often than retained");
+            if (references.compareAndSet(count, count - 1)) {
+                if (count == 1)
+                    pool.recycle(buffer);
+                return;
+            }
+        }
+    }
+
+    private void checkLive() {
+        if (references.get() <= 0)
+            throw new IllegalStateException("Page was already released");
+    }
+}
+
+// hands out pages backed by direct buffers of one size and takes them back for reuse, so
+// steady scanning and printing allocates no new buffers. At most maxPooled free buffers
+// are kept; beyond that released buffers are left to the garbage collector.
+class PagePool {
+    public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+
+    private final int pageSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    public PagePool() {
+        this(DEFAULT_PAGE_SIZE, 1024);
+    }
+
+    public PagePool(int pageSize, int maxPooled) {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        this.pageSize = pageSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public Page acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            reused.incrementAndGet();
+        } else {
+            buffer = ByteBuffer.allocateDirect(pageSize);
+            allocated.incrementAndGet();
+        }
+        return new Page(this, buffer);
+    }
+
+    void recycle(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        free.offer(buffer);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    public int getPooled() {
+        return pooled.get();
+    }
+}
+
+// a scanner that fills the document with pages from a pool; here the image comes from an array
+// standing in for the sensor, a driver would read the device straight into the page buffers
+class PagedScanner implements IScanner {
+    private final PagePool pool;
+    private final byte[] image;
+
+    public PagedScanner(PagePool pool, byte[] image) {
+        this.pool = pool;
+        this.image = image;
+    }
+
+    public void Scan(Document d) {
+        for (int offset = 0; offset < image.length; offset += pool.getPageSize()) {
+            Page page = pool.acquire();
+            page.writable().put(image, offset, Math.min(pool.getPageSize(), image.length - offset));
+            d.addPage(page);
+        }
+    }
+}
+
+// a printer that reads the pages through read-only views, as a driver would hand them to
+// the device; the checksum stands in for the device
+class PagedPrinter implements Printer {
+    private final CRC32 crc = new CRC32();
+    private long printed;
+
+    public void Print(Document d) {
+        for (Page page : d.getPages()) {
+            ByteBuffer content = page.content();
+            printed += content.remaining();
+            crc.update(content);
+        }
+    }
+
+    public long getPrinted() {
+        return printed;
+    }
+
+    public long getChecksum() {
+        return crc.getValue();
+    }
+}
+
+class PagePoolDemo {
+    static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    public static void main(String[] args) {
+        byte[] image = new byte[8 * PagePool.DEFAULT_PAGE_SIZE];
+        new Random(42).nextBytes(image);
+        int copies = 5_000;
+
+        for (int round = 0; round < 3; round++) {
+            // before: every page is a byte[], copied by the scan and again by the print
+            long gcs = collections();
+            long start = System.nanoTime();
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < copies; i++) {
+                byte[][] scanned = new byte[image.length / PagePool.DEFAULT_PAGE_SIZE][];
+                for (int p = 0; p < scanned.length; p++)
+                    scanned[p] = Arrays.copyOfRange(image, p * PagePool.DEFAULT_PAGE_SIZE,
+                            (p + 1) * PagePool.DEFAULT_PAGE_SIZE);
+                for (byte[] page : scanned)
+                    crc.update(page.clone());
+            }
+            System.out.printf("heap pages:   %d copies in %d ms, %d collections%n",
+                    copies, (System.nanoTime() - start) / 1_000_000, collections() - gcs);
+
+            // after: pooled pages, scanned once and printed twice from the same buffers
+            PagePool pool = new PagePool();
+            PagedScanner scanner = new PagedScanner(pool, image);
+            PagedPrinter printer = new PagedPrinter(), second = new PagedPrinter();
+            gcs = collections();
+            start = System.nanoTime();
+            for (int i = 0; i < copies; i++) {
+                Document scanned = new Document();
+                scanner.Scan(scanned);
+                try (Document forSecond = scanned.share()) {
+                    printer.Print(scanned);
+                    scanned.close(); // the pages stay alive for the second printer
+                    second.Print(forSecond);
+                }
+            }
+            System.out.printf("pooled pages: %d copies in %d ms, %d collections, %d buffers allocated, "
+                            + "%d reused, same output: %b%n",
+                    copies, (System.nanoTime() - start) / 1_000_000, collections() - gcs, pool.getAllocated(),
+                    pool.getReused(), printer.getChecksum() == crc.getValue() && second.getChecksum() == crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+// splits the items across a ForkJoinPool: ranges bigger than the threshold are halved,
+// smaller ones are scanned sequentially. With ordered results every range returns its own
+// list and the lists are joined in encounter order; unordered results go straight into a
+// shared queue, which saves the merging.
+class ParallelFilter<T> implements Filter<T> {
+    public static final int DEFAULT_THRESHOLD = 8192;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final boolean ordered;
+
+    public ParallelFilter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD, true);
+    }
+
+    public ParallelFilter(ForkJoinPool pool, int threshold, boolean ordered) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        this.pool = pool;
+        this.threshold = threshold;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public Stream<T> filter(List<T> items, Specification<T> spec) {
+        // splitting by index only pays off if get(i) is cheap
+        List<T> source = items instanceof RandomAccess ? items : new ArrayList<>(items);
+        if (source.size() <= threshold)
+            return source.stream().filter(spec::isSatisfied);
+        if (ordered)
+            return pool.invoke(new OrderedTask<>(source, spec, 0, source.size(), threshold)).stream();
+        ConcurrentLinkedQueue<T> results = new ConcurrentLinkedQueue<>();
+        pool.invoke(new UnorderedTask<>(source, spec, 0, source.size(), threshold, results));
+        return results.stream();
+    }
+
+    @SuppressWarnings("serial") // tasks never leave the pool they run in
+    private static class OrderedTask<T> extends RecursiveTask<List<T>> {
+        private final List<T> items;
+        private final Specification<T> spec;
+        private final int from, to, threshold;
+
+        OrderedTask(List<T> items, Specification<T> spec, int from, int to, int threshold) {
+            this.items = items;
+            this.spec = spec;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from <= threshold) {
+                List<T> result = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    T item = items.get(i);
+                    if (spec.isSatisfied(item))
+                        result.add(item);
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            OrderedTask<T> left = new OrderedTask<>(items, spec, from, middle, threshold);
+            left.fork();
+            List<T> right = new OrderedTask<>(items, spec, middle, to, threshold).compute();
+            List<T> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial") // tasks never leave the pool they run in
+    private static class UnorderedTask<T> extends RecursiveAction {
+        private final List<T> items;
+        private final Specification<T> spec;
+        private final int from, to, threshold;
+        private final ConcurrentLinkedQueue<T> results;
+
+        UnorderedTask(List<T> items, Specification<T> spec, int from, int to, int threshold,
+                      ConcurrentLinkedQueue<T> results) {
+            this.items = items;
+            this.spec = spec;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                List<T> matches = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    T item = items.get(i);
+                    if (spec.isSatisfied(item))
+                        matches.add(item);
+                }
+                results.addAll(matches);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new UnorderedTask<>(items, spec, from, middle, threshold, results),
+                    new UnorderedTask<>(items, spec, middle, to, threshold, results));
+        }
+    }
+}
+
+class ParallelFilterDemo {
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 4_000_000; i++)
+            products.add(new Product("Product " + i,
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+
+        Specification<Product> largeBlue = new AndSpecification<>(
+                new ColorSpecification(Color.BLUE),
+                new SizeSpecification(Size.LARGE));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            for (boolean ordered : new boolean[]{true, false}) {
+                ParallelFilter<Product> filter =
+                        new ParallelFilter<>(pool, ParallelFilter.DEFAULT_THRESHOLD, ordered);
+                long best = Long.MAX_VALUE, found = 0;
+                for (int round = 0; round < 5; round++) {
+                    long start = System.nanoTime();
+                    found = filter.filter(products, largeBlue).count();
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.printf("%d thread(s), %s: %d found, best of 5 %d ms%n",
+                        threads, ordered ? "ordered" : "unordered", found, best / 1_000_000);
+            }
+            pool.shutdown();
+        }
+    }
+}
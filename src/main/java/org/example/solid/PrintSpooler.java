@@ -0,0 +1,288 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// sits in front of a Printer and turns many small jobs into few device calls. Submitted
+// documents are queued; a flusher thread merges the pages of adjacent jobs into one Document
+// and prints it once the batch reaches maxBatchPages or its oldest job has waited maxDelay.
+// A job holds its own shares of the documents, so callers may close theirs right after
+// submitting; pages are shared, not copied. A job bigger than the limit is printed alone.
+class PrintSpooler implements Printer, AutoCloseable {
+    private static final class Job {
+        final List<Document> documents; // shares owned by the job, closed once printed
+        final int pages;                // as many as it adds to the merged document
+        final long queued = System.nanoTime();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Job(List<Document> documents) {
+            this.documents = documents;
+            int pages = 0;
+            for (Document d : documents)
+                pages += d.getPageCount();
+            this.pages = pages;
+        }
+    }
+
+    private final Printer printer;
+    private final int maxBatchPages;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final List<Job> pending = new ArrayList<>(); // guarded by lock
+    private int pendingPages;                            // guarded by lock
+    private int forced;                                  // pending jobs to print right away, guarded by lock
+    private boolean running = true;                      // guarded by lock
+    private final Thread flusher;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong jobs = new AtomicLong();
+
+    public PrintSpooler(Printer printer, int maxBatchPages, long maxDelayMillis) {
+        if (maxBatchPages < 1)
+            throw new IllegalArgumentException("maxBatchPages must be positive: " + maxBatchPages);
+        this.printer = printer;
+        this.maxBatchPages = maxBatchPages;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.flusher = DeviceThreads.start(this::flushLoop, "print-spooler");
+    }
+
+    /**
+     * Queues the documents as one job; the future completes once they have been printed.
+     * The job shares the pages, so the caller may close the documents at any time.
+     */
+    public CompletableFuture<Void> submit(Collection<Document> documents) {
+        List<Document> shares = new ArrayList<>();
+        try {
+            for (Document d : documents)
+                shares.add(d.share());
+        } catch (RuntimeException e) {
+            shares.forEach(Document::close);
+            throw e;
+        }
+        Job job = new Job(shares);
+        lock.lock();
+        try {
+            if (!running) {
+                shares.forEach(Document::close);
+                throw new IllegalStateException("Spooler is closed");
+            }
+            pending.add(job);
+            pendingPages += job.pages;
+            if (pendingPages >= maxBatchPages || pending.size() == 1)
+                ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        return job.future;
+    }
+
+    /**
+     * Prints the document with the next batch and waits for it, rethrowing what the printer
+     * threw. A caller printing one document at a time waits up to maxDelay for each; callers
+     * that want their jobs coalesced use submit.
+     */
+    public void Print(Document d) throws Exception {
+        try {
+            submit(Collections.singletonList(d)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * A future that completes once everything queued so far has been printed.
+     */
+    public CompletableFuture<Void> flush() {
+        lock.lock();
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Job job : pending)
+                futures.add(job.future);
+            forced = pending.size();
+            ready.signal();
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getJobs() {
+        return jobs.get();
+    }
+
+    // prints what is still queued, then stops the flusher
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Job> batch;
+            lock.lock();
+            try {
+                while (true) {
+                    if (pending.isEmpty()) {
+                        if (!running)
+                            return;
+                        ready.awaitUninterruptibly();
+                        continue;
+                    }
+                    long wait = pending.get(0).queued + maxDelayNanos - System.nanoTime();
+                    if (pendingPages >= maxBatchPages || wait <= 0 || forced > 0 || !running)
+                        break;
+                    try {
+                        ready.awaitNanos(wait);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                batch = take();
+            } finally {
+                lock.unlock();
+            }
+            print(batch);
+        }
+    }
+
+    // called with the lock held: the oldest jobs, up to maxBatchPages, but at least one
+    private List<Job> take() {
+        List<Job> batch = new ArrayList<>();
+        int pages = 0;
+        while (!pending.isEmpty() && (batch.isEmpty() || pages + pending.get(0).pages <= maxBatchPages)) {
+            Job job = pending.remove(0);
+            batch.add(job);
+            pages += job.pages;
+        }
+        pendingPages -= pages;
+        forced = Math.max(0, forced - batch.size());
+        return batch;
+    }
+
+    // whatever the printer throws, Errors included, fails the batch and not the flusher
+    private void print(List<Job> batch) {
+        Throwable failure = null;
+        try (Document merged = new Document()) {
+            for (Job job : batch)
+                for (Document d : job.documents)
+                    for (Page page : d.getPages())
+                        merged.addPage(page.retain());
+            printer.Print(merged);
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            for (Job job : batch)
+                job.documents.forEach(Document::close);
+        }
+        batches.incrementAndGet();
+        jobs.addAndGet(batch.size());
+        for (Job job : batch) {
+            if (failure == null)
+                job.future.complete(null);
+            else
+                job.future.completeExceptionally(failure);
+        }
+    }
+}
+
+class PrintSpoolerDemo {
+    // a printer with a fixed cost per call, like a round trip to the device, plus a cost per page
+    static class RemotePrinter implements Printer {
+        long calls, pages;
+
+        public void Print(Document d) {
+            calls++;
+            pages += d.getPageCount();
+            long until = System.nanoTime() + 500_000 + 2_000L * d.getPageCount();
+            while (System.nanoTime() < until)
+                Thread.onSpinWait();
+        }
+    }
+
+    static List<Document> reports(PagePool pool, int count, Random random) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Document d = new Document();
+            for (int p = 1 + random.nextInt(3); p > 0; p--) {
+                Page page = pool.acquire();
+                page.writable().putInt(i).putInt(p);
+                d.addPage(page);
+            }
+            documents.add(d);
+        }
+        return documents;
+    }
+
+    public static void main(String[] args) {
+        PagePool pool = new PagePool(4096, 16_384);
+        int bursts = 20, perBurst = 200;
+
+        for (int round = 0; round < 2; round++) {
+            Random random = new Random(42);
+            RemotePrinter direct = new RemotePrinter();
+            long start = System.nanoTime();
+            for (int b = 0; b < bursts; b++) {
+                List<Document> burst = reports(pool, perBurst, random);
+                for (Document d : burst) {
+                    direct.Print(d);
+                    d.close();
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("direct:  %,d documents in %d ms, %d device calls, %,d documents/s%n",
+                    bursts * perBurst, elapsed / 1_000_000, direct.calls,
+                    (long) bursts * perBurst * 1_000_000_000L / elapsed);
+
+            random = new Random(42);
+            RemotePrinter device = new RemotePrinter();
+            start = System.nanoTime();
+            try (PrintSpooler spooler = new PrintSpooler(device, 256, 5)) {
+                List<CompletableFuture<Void>> printed = new ArrayList<>();
+                for (int b = 0; b < bursts; b++) {
+                    List<Document> burst = reports(pool, perBurst, random);
+                    // small jobs of a few documents each, as the reporting jobs send them
+                    for (int i = 0; i < burst.size(); i += 4) {
+                        List<Document> job = burst.subList(i, Math.min(burst.size(), i + 4));
+                        printed.add(spooler.submit(job));
+                    }
+                    burst.forEach(Document::close); // the jobs hold their own shares
+                }
+                CompletableFuture.allOf(printed.toArray(new CompletableFuture<?>[0])).join();
+                elapsed = System.nanoTime() - start;
+                System.out.printf("spooled: %,d documents in %d ms, %d device calls for %d jobs, %,d documents/s%n",
+                        bursts * perBurst, elapsed / 1_000_000, device.calls, spooler.getJobs(),
+                        (long) bursts * perBurst * 1_000_000_000L / elapsed);
+            }
+            System.out.printf("same pages printed: %b, page buffers allocated: %d%n",
+                    direct.pages == device.pages, pool.getAllocated());
+        }
+    }
+}
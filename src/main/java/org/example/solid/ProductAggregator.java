@@ -0,0 +1,192 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// product counts grouped by Color x Size, kept in one flat primitive array indexed by
+// the enum ordinals; ordinal 0 of each dimension is reserved for null values
+class ProductHistogram {
+    private static final int COLORS = Color.values().length + 1;
+    private static final int SIZES = Size.values().length + 1;
+
+    private final long[] counts = new long[COLORS * SIZES];
+
+    static int slot(Color color, Size size) {
+        return slot(color == null ? -1 : color.ordinal(), size == null ? -1 : size.ordinal());
+    }
+
+    static int slot(int colorOrdinal, int sizeOrdinal) {
+        return (colorOrdinal + 1) * SIZES + sizeOrdinal + 1;
+    }
+
+    void increment(int slot) {
+        counts[slot]++;
+    }
+
+    void merge(ProductHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+    }
+
+    public long count(Color color, Size size) {
+        return counts[slot(color, size)];
+    }
+
+    public long countByColor(Color color) {
+        int base = slot(color, null); // the null size slot starts the row of a color
+        long total = 0;
+        for (int s = 0; s < SIZES; s++)
+            total += counts[base + s];
+        return total;
+    }
+
+    public long countBySize(Size size) {
+        long total = 0;
+        for (int c = 0; c < COLORS; c++)
+            total += counts[c * SIZES + (size == null ? 0 : size.ordinal() + 1)];
+        return total;
+    }
+
+    public long total() {
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("%-8s", ""));
+        for (Size size : Size.values())
+            sb.append(String.format("%10s", size));
+        for (Color color : Color.values()) {
+            sb.append(System.lineSeparator()).append(String.format("%-8s", color));
+            for (Size size : Size.values())
+                sb.append(String.format("%10d", count(color, size)));
+        }
+        return sb.toString();
+    }
+}
+
+// group-by counts in a single pass instead of one ProductFilter run per Color/Size combination.
+// The parallel mode gives every fork/join leaf its own counters and merges them on join.
+class ProductAggregator {
+    private static final int THRESHOLD = 16384;
+
+    private ProductAggregator() {
+    }
+
+    public static ProductHistogram countBy(List<Product> products) {
+        if (products instanceof ProductTable)
+            return countAll((ProductTable) products);
+        return countBy(products, p -> true);
+    }
+
+    public static ProductHistogram countBy(List<Product> products, Specification<Product> spec) {
+        if (products instanceof ProductTable)
+            return countBy((ProductTable) products, SpecificationCompiler.compile(spec), 0, products.size());
+        ProductHistogram histogram = new ProductHistogram();
+        for (Product p : products)
+            if (spec.isSatisfied(p))
+                histogram.increment(ProductHistogram.slot(p.color, p.size));
+        return histogram;
+    }
+
+    public static ProductHistogram countByParallel(List<Product> products, Specification<Product> spec,
+                                                   ForkJoinPool pool) {
+        List<Product> source = products instanceof RandomAccess ? products : new ArrayList<>(products);
+        if (source instanceof ProductTable)
+            spec = SpecificationCompiler.compile(spec); // color/size trees become masks over the columns
+        return pool.invoke(new CountTask(source, spec, 0, source.size()));
+    }
+
+    // columnar input: narrow with the selection vector, then count straight from the byte columns
+    private static ProductHistogram countBy(ProductTable table, Specification<Product> spec, int from, int to) {
+        byte[] colors = table.colorColumn();
+        byte[] sizes = table.sizeColumn();
+        ProductHistogram histogram = new ProductHistogram();
+        for (int row : new ColumnarFilter().selectionVector(table, spec, from, to))
+            histogram.increment(ProductHistogram.slot(colors[row], sizes[row]));
+        return histogram;
+    }
+
+    // no specification: every row counts, so nothing has to be selected first
+    private static ProductHistogram countAll(ProductTable table) {
+        byte[] colors = table.colorColumn();
+        byte[] sizes = table.sizeColumn();
+        ProductHistogram histogram = new ProductHistogram();
+        for (int row = 0; row < table.size(); row++)
+            histogram.increment(ProductHistogram.slot(colors[row], sizes[row]));
+        return histogram;
+    }
+
+    @SuppressWarnings("serial") // tasks never leave the pool they run in
+    private static class CountTask extends RecursiveTask<ProductHistogram> {
+        private final List<Product> products;
+        private final Specification<Product> spec;
+        private final int from, to;
+
+        CountTask(List<Product> products, Specification<Product> spec, int from, int to) {
+            this.products = products;
+            this.spec = spec;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ProductHistogram compute() {
+            if (to - from <= THRESHOLD) {
+                // a sublist of a table is no table: leaves of a table count its columns in place
+                if (products instanceof ProductTable)
+                    return countBy((ProductTable) products, spec, from, to);
+                return countBy(products.subList(from, to), spec);
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(products, spec, from, middle);
+            left.fork();
+            ProductHistogram result = new CountTask(products, spec, middle, to).compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+}
+
+class ProductAggregatorDemo {
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2_000_000; i++)
+            products.add(new Product("Product " + i,
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+
+        // the old way: one filter pass per combination
+        long start = System.nanoTime();
+        ProductFilter pf = new ProductFilter();
+        long perCombination = 0;
+        for (Color color : colors)
+            for (Size size : sizes)
+                perCombination += pf.filterBySizeAndColor(products, size, color).count();
+        System.out.printf("%d passes: %d products in %d ms%n",
+                colors.length * sizes.length, perCombination, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        ProductHistogram histogram = ProductAggregator.countBy(products);
+        System.out.printf("single pass: %d products in %d ms%n",
+                histogram.total(), (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        Specification<Product> notSmall = new NotSpecification<>(new SizeSpecification(Size.SMALL));
+        histogram = ProductAggregator.countByParallel(products, notSmall, ForkJoinPool.commonPool());
+        System.out.printf("parallel, not small: %d products in %d ms%n",
+                histogram.total(), (System.nanoTime() - start) / 1_000_000);
+        System.out.println(histogram);
+        System.out.println("green: " + histogram.countByColor(Color.GREEN)
+                + ", large: " + histogram.countBySize(Size.LARGE));
+    }
+}
@@ -0,0 +1,254 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// parses text queries into product specifications, e.g.
+//   color=GREEN and size in (LARGE,YUGE)
+//   not (color != BLUE or size = SMALL)
+// grammar:
+//   expr      := and ('or' and)*
+//   and       := unary ('and' unary)*
+//   unary     := 'not' unary | '(' expr ')' | predicate
+//   predicate := field ('=' | '!=') value | field ['not'] 'in' '(' value (',' value)* ')'
+//   field     := 'color' | 'size'
+// keywords and fields are case-insensitive, values are enum constant names
+class ProductQueryParser {
+    private final List<String> tokens;
+    private int position;
+
+    private ProductQueryParser(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    public static Specification<Product> parse(String query) {
+        return parse(tokenize(query));
+    }
+
+    static Specification<Product> parse(List<String> tokens) {
+        ProductQueryParser parser = new ProductQueryParser(tokens);
+        Specification<Product> spec = parser.expression();
+        if (parser.position < tokens.size())
+            throw parser.error("unexpected '" + tokens.get(parser.position) + "'");
+        return spec;
+    }
+
+    /**
+     * Splits a query into tokens: lower-case keywords and fields, upper-case values and the
+     * symbols = != ( ) ,. Joining the tokens with single spaces gives the normalized query.
+     */
+    static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',' || c == '=') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '!' && i + 1 < query.length() && query.charAt(i + 1) == '=') {
+                tokens.add("!=");
+                i += 2;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < query.length() && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '_'))
+                    i++;
+                String word = query.substring(start, i);
+                String lower = word.toLowerCase(Locale.ROOT);
+                tokens.add(isKeyword(lower) ? lower : word.toUpperCase(Locale.ROOT));
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at " + i + " in: " + query);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isKeyword(String word) {
+        switch (word) {
+            case "and":
+            case "or":
+            case "not":
+            case "in":
+            case "color":
+            case "size":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Specification<Product> expression() {
+        Specification<Product> spec = conjunction();
+        while (accept("or"))
+            spec = new OrSpecification<>(spec, conjunction());
+        return spec;
+    }
+
+    private Specification<Product> conjunction() {
+        Specification<Product> spec = unary();
+        while (accept("and"))
+            spec = new AndSpecification<>(spec, unary());
+        return spec;
+    }
+
+    private Specification<Product> unary() {
+        if (accept("not"))
+            return new NotSpecification<>(unary());
+        if (accept("(")) {
+            Specification<Product> spec = expression();
+            expect(")");
+            return spec;
+        }
+        return predicate();
+    }
+
+    private Specification<Product> predicate() {
+        String field = next("color or size");
+        if (!field.equals("color") && !field.equals("size"))
+            throw error("expected color or size but found '" + field + "'");
+        if (accept("="))
+            return leaf(field, next("a value"));
+        if (accept("!="))
+            return new NotSpecification<>(leaf(field, next("a value")));
+        boolean negated = accept("not");
+        expect("in");
+        expect("(");
+        Specification<Product> spec = leaf(field, next("a value"));
+        while (accept(","))
+            spec = new OrSpecification<>(spec, leaf(field, next("a value")));
+        expect(")");
+        return negated ? new NotSpecification<>(spec) : spec;
+    }
+
+    private Specification<Product> leaf(String field, String value) {
+        try {
+            return field.equals("color")
+                    ? new ColorSpecification(Color.valueOf(value))
+                    : new SizeSpecification(Size.valueOf(value));
+        } catch (IllegalArgumentException e) {
+            throw error("unknown " + field + " '" + value + "'");
+        }
+    }
+
+    private boolean accept(String token) {
+        if (position < tokens.size() && tokens.get(position).equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token))
+            throw error("expected '" + token + "'");
+    }
+
+    private String next(String what) {
+        if (position >= tokens.size())
+            throw error("expected " + what);
+        return tokens.get(position++);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(
+                "Invalid query, " + message + " at token " + position + ": " + String.join(" ", tokens));
+    }
+}
+
+// LRU cache of compiled query plans keyed by the normalized query text,
+// so that repeated queries skip parsing and planning. The plans are what SpecificationCompiler
+// makes of the parsed query, which BitmapIndexFilter and ColumnarFilter answer from their
+// indexes too, and they can be shared by any number of threads.
+class QueryPlanCache {
+    private final Map<String, Specification<Product>> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QueryPlanCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        // access order turns the LinkedHashMap into an LRU list
+        plans = new LinkedHashMap<String, Specification<Product>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Specification<Product>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public Specification<Product> get(String query) {
+        List<String> tokens = ProductQueryParser.tokenize(query);
+        String key = String.join(" ", tokens);
+        synchronized (plans) {
+            Specification<Product> plan = plans.get(key);
+            if (plan != null) {
+                hits.incrementAndGet();
+                return plan;
+            }
+        }
+        misses.incrementAndGet();
+        // plan outside the lock; two threads missing on the same query both plan it, the last one wins
+        Specification<Product> plan = SpecificationCompiler.compile(ProductQueryParser.parse(tokens));
+        synchronized (plans) {
+            plans.put(key, plan);
+        }
+        return plan;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+}
+
+class ProductQueryParserDemo {
+    public static void main(String[] args) {
+        List<Product> products = Arrays.asList(
+                new Product("Apple", Color.GREEN, Size.SMALL),
+                new Product("Tree", Color.GREEN, Size.LARGE),
+                new Product("House", Color.BLUE, Size.LARGE),
+                new Product("Mountain", Color.GREEN, Size.YUGE));
+
+        QueryPlanCache cache = new QueryPlanCache(100);
+        BetterFilter bf = new BetterFilter();
+        String[] queries = {
+                "color=GREEN and size in (LARGE,YUGE)",
+                "COLOR = green AND size IN (large, yuge)", // same plan, different spelling
+                "not (color != BLUE or size = SMALL)",
+                "size not in (SMALL, MEDIUM) and color = GREEN"
+        };
+        for (String query : queries) {
+            System.out.println(query + ":");
+            bf.filter(products, cache.get(query))
+                    .forEach(p -> System.out.println(" - " + p.name));
+        }
+        System.out.println("plan cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+
+        try {
+            ProductQueryParser.parse("color = PURPLE");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.example.solid;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+// struct-of-arrays storage for products: instead of one heap object per product,
+// every attribute lives in its own primitive column. Color and Size are stored as
+// byte ordinals (-1 for null), names are dictionary-encoded into int ids.
+// get(i) materializes a new Product from the columns, so identity is not preserved.
+class ProductTable extends AbstractList<Product> implements RandomAccess {
+    private static final Color[] COLORS = Color.values();
+    private static final Size[] SIZES = Size.values();
+
+    private byte[] colors = new byte[16];
+    private byte[] sizes = new byte[16];
+    private int[] nameIds = new int[16];
+    private int count;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameDictionary = new HashMap<>();
+
+    public static ProductTable of(Collection<Product> products) {
+        ProductTable table = new ProductTable();
+        table.ensureCapacity(products.size());
+        for (Product p : products)
+            table.add(p);
+        return table;
+    }
+
+    @Override
+    public boolean add(Product p) {
+        ensureCapacity(count + 1);
+        colors[count] = (byte) (p.color == null ? -1 : p.color.ordinal());
+        sizes[count] = (byte) (p.size == null ? -1 : p.size.ordinal());
+        nameIds[count] = encode(p.name);
+        count++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Product get(int index) {
+        checkIndex(index);
+        return new Product(name(index), color(index), size(index));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public String name(int index) {
+        checkIndex(index);
+        return names.get(nameIds[index]);
+    }
+
+    public Color color(int index) {
+        checkIndex(index);
+        return colors[index] < 0 ? null : COLORS[colors[index]];
+    }
+
+    public Size size(int index) {
+        checkIndex(index);
+        return sizes[index] < 0 ? null : SIZES[sizes[index]];
+    }
+
+    public int distinctNames() {
+        return names.size();
+    }
+
+    // raw columns for scanning filters; only the first size() elements are valid
+    byte[] colorColumn() {
+        return colors;
+    }
+
+    byte[] sizeColumn() {
+        return sizes;
+    }
+
+    private int encode(String name) {
+        Integer id = nameDictionary.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameDictionary.put(name, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= colors.length)
+            return;
+        int newCapacity = Math.max(capacity, colors.length + (colors.length >> 1));
+        colors = Arrays.copyOf(colors, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        nameIds = Arrays.copyOf(nameIds, newCapacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+    }
+}
+
+// evaluates specifications as tight loops over the primitive columns of a ProductTable,
+// narrowing a selection vector of matching row numbers term by term.
+// any other list (or specification it doesn't know) is handled by a plain scan.
+class ColumnarFilter implements Filter<Product> {
+    private static final int BLOCK_SIZE = 4096;
+
+    @Override
+    public Stream<Product> filter(List<Product> items, Specification<Product> spec) {
+        if (!(items instanceof ProductTable))
+            return items.stream().filter(spec::isSatisfied);
+        ProductTable table = (ProductTable) items;
+        int[] selection = new int[table.size()];
+        int n = select(table, spec, selection, 0, table.size(), true);
+        return Arrays.stream(selection, 0, n).mapToObj(table::get);
+    }
+
+    // unordered pages are selected block by block, so the scan stops once the page is full
+    @Override
+    public Stream<Product> query(List<Product> items, Query<Product> query) {
+        if (!(items instanceof ProductTable) || query.getOrder() != null)
+            return Filter.super.query(items, query);
+        ProductTable table = (ProductTable) items;
+        int window = query.window();
+        int[] selection = new int[Math.min(BLOCK_SIZE, table.size())];
+        List<Product> page = new ArrayList<>();
+        int matched = 0;
+        for (int from = 0; from < table.size() && matched < window; from += BLOCK_SIZE) {
+            int n = select(table, query.getSpecification(), selection, from,
+                    Math.min(BLOCK_SIZE, table.size() - from), true);
+            for (int k = 0; k < n && matched < window; k++, matched++)
+                if (matched >= query.getOffset())
+                    page.add(table.get(selection[k]));
+        }
+        return page.stream();
+    }
+
+    /**
+     * Returns the row numbers of the table that satisfy the specification, in ascending order.
+     */
+    public int[] selectionVector(ProductTable table, Specification<Product> spec) {
+        return selectionVector(table, spec, 0, table.size());
+    }
+
+    /**
+     * The same for the rows from (inclusive) to to (exclusive).
+     */
+    public int[] selectionVector(ProductTable table, Specification<Product> spec, int from, int to) {
+        if (from < 0 || from > to || to > table.size())
+            throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + table.size());
+        int[] selection = new int[to - from];
+        int n = select(table, spec, selection, from, to - from, true);
+        return Arrays.copyOf(selection, n);
+    }
+
+    // if all is set, the n rows starting at from are candidates and selection is filled from scratch,
+    // otherwise the first n entries of selection are the candidates; returns the new count
+    @SuppressWarnings("unchecked")
+    private int select(ProductTable table, Specification<Product> spec, int[] selection,
+                       int from, int n, boolean all) {
+        if (spec instanceof ColorSpecification) {
+            Color color = ((ColorSpecification) spec).getColor();
+            return match(table.colorColumn(), color == null ? -1 : color.ordinal(), selection, from, n, all);
+        }
+        if (spec instanceof SizeSpecification) {
+            Size size = ((SizeSpecification) spec).getSize();
+            return match(table.sizeColumn(), size == null ? -1 : size.ordinal(), selection, from, n, all);
+        }
+        if (spec instanceof ProductMask)
+            return match(table.colorColumn(), table.sizeColumn(), (ProductMask) spec, selection, from, n, all);
+        if (spec instanceof AndSpecification) {
+            AndSpecification<Product> and = (AndSpecification<Product>) spec;
+            n = select(table, and.getFirst(), selection, from, n, all);
+            return select(table, and.getSecond(), selection, from, n, false);
+        }
+        if (spec instanceof SpecificationCompiler.Conjunction) {
+            for (Specification<Product> term : ((SpecificationCompiler.Conjunction<Product>) spec).getTerms()) {
+                n = select(table, term, selection, from, n, all);
+                all = false;
+            }
+            return n;
+        }
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int row = all ? from + k : selection[k];
+            if (spec.isSatisfied(table.get(row)))
+                selection[m++] = row;
+        }
+        return m;
+    }
+
+    // the row is always written, the count only advances on a match: no branch in the loop body
+    private static int match(byte[] column, int value, int[] selection, int from, int n, boolean all) {
+        int m = 0;
+        if (all) {
+            for (int row = from; row < from + n; row++) {
+                selection[m] = row;
+                m += equal(column[row], value);
+            }
+        } else {
+            for (int k = 0; k < n; k++) {
+                int row = selection[k];
+                selection[m] = row;
+                m += equal(column[row], value);
+            }
+        }
+        return m;
+    }
+
+    // the same for a mask over both columns; the stored -1 for null is slot 0
+    private static int match(byte[] colors, byte[] sizes, ProductMask mask, int[] selection,
+                             int from, int n, boolean all) {
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int row = all ? from + k : selection[k];
+            selection[m] = row;
+            m += mask.bit(colors[row] + 1, sizes[row] + 1);
+        }
+        return m;
+    }
+
+    // 1 if a == b, else 0
+    private static int equal(int a, int b) {
+        int x = a ^ b;
+        return ((x | -x) >>> 31) ^ 1;
+    }
+}
+
+class ProductTableDemo {
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2_000_000; i++)
+            products.add(new Product("Product " + (i % 1000),
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+        ProductTable table = ProductTable.of(products);
+        System.out.println(table.size() + " products, " + table.distinctNames() + " distinct names");
+
+        Specification<Product> largeBlue = new AndSpecification<>(
+                new ColorSpecification(Color.BLUE),
+                new SizeSpecification(Size.LARGE));
+
+        BetterFilter bf = new BetterFilter();
+        ColumnarFilter cf = new ColumnarFilter();
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long scanned = bf.filter(products, largeBlue).count();
+            long scanTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int found = cf.selectionVector(table, largeBlue).length;
+            long columnTime = System.nanoTime() - start;
+
+            System.out.printf("large blue: objects %d in %d ms, columns %d in %d ms%n",
+                    scanned, scanTime / 1_000_000, found, columnTime / 1_000_000);
+        }
+    }
+}
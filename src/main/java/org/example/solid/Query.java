@@ -0,0 +1,169 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+// a Specification plus paging: skip the first offset matches, return at most limit of them,
+// optionally ordered by a comparator (top-k). Filters run it through Filter.query.
+class Query<T> {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // an item and its position among the matches, which breaks ties in the order
+    private static final class Ranked<T> {
+        final T item;
+        final long index;
+
+        Ranked(T item, long index) {
+            this.item = item;
+            this.index = index;
+        }
+
+        static <T> Comparator<Ranked<T>> by(Comparator<? super T> order) {
+            return (a, b) -> {
+                int c = order.compare(a.item, b.item);
+                return c != 0 ? c : Long.compare(a.index, b.index);
+            };
+        }
+    }
+
+    private final Specification<T> spec;
+    private int offset;
+    private int limit = UNLIMITED;
+    private Comparator<? super T> order;
+
+    public Query(Specification<T> spec) {
+        this.spec = spec;
+    }
+
+    public static <T> Query<T> where(Specification<T> spec) {
+        return new Query<>(spec);
+    }
+
+    public Query<T> offset(int offset) {
+        if (offset < 0)
+            throw new IllegalArgumentException("offset must not be negative: " + offset);
+        this.offset = offset;
+        return this;
+    }
+
+    public Query<T> limit(int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        this.limit = limit;
+        return this;
+    }
+
+    public Query<T> orderBy(Comparator<? super T> order) {
+        this.order = order;
+        return this;
+    }
+
+    public Specification<T> getSpecification() {
+        return spec;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public Comparator<? super T> getOrder() {
+        return order;
+    }
+
+    // offset + limit without overflowing
+    int window() {
+        return limit > UNLIMITED - offset ? UNLIMITED : offset + limit;
+    }
+
+    /**
+     * Applies offset, limit and order to matching items, consuming no more of the
+     * iterator than needed. Unordered queries stop after offset + limit matches;
+     * ordered ones keep a bounded heap of the best offset + limit matches.
+     */
+    public List<T> collect(Iterator<T> matches) {
+        List<T> result = new ArrayList<>();
+        if (limit == 0)
+            return result;
+        if (order == null) {
+            for (int skipped = 0; skipped < offset && matches.hasNext(); skipped++)
+                matches.next();
+            while (result.size() < limit && matches.hasNext())
+                result.add(matches.next());
+            return result;
+        }
+
+        int window = window();
+        if (window == UNLIMITED) { // nothing to bound, just sort everything
+            matches.forEachRemaining(result::add);
+            result.sort(order);
+        } else {
+            // max-heap on the order: its head is the worst of the best items seen so far. Equal
+            // items rank by arrival, as in the stable sort above, so an item that only ties
+            // with the head never displaces it and pages over a non-unique order don't overlap
+            Comparator<Ranked<T>> ranking = Ranked.by(order);
+            PriorityQueue<Ranked<T>> heap = new PriorityQueue<>(Math.min(window, 1024),
+                    Collections.reverseOrder(ranking));
+            for (long index = 0; matches.hasNext(); index++) {
+                T item = matches.next();
+                if (heap.size() < window)
+                    heap.add(new Ranked<>(item, index));
+                else if (order.compare(item, heap.peek().item) < 0) {
+                    heap.poll();
+                    heap.add(new Ranked<>(item, index));
+                }
+            }
+            List<Ranked<T>> ranked = new ArrayList<>(heap);
+            ranked.sort(ranking);
+            for (Ranked<T> r : ranked)
+                result.add(r.item);
+        }
+        return offset >= result.size()
+                ? new ArrayList<>()
+                : new ArrayList<>(result.subList(offset, Math.min(result.size(), window)));
+    }
+}
+
+class QueryDemo {
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2_000_000; i++)
+            products.add(new Product("Product " + i,
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+
+        Specification<Product> large = new SizeSpecification(Size.LARGE);
+        BetterFilter bf = new BetterFilter();
+
+        long start = System.nanoTime();
+        List<Product> everything = new ArrayList<>();
+        bf.filter(products, large).forEach(everything::add);
+        List<Product> page = everything.subList(100, 120);
+        System.out.printf("page 6 by full scan: %d items in %d ms%n",
+                page.size(), (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        page = bf.query(products, Query.where(large).offset(100).limit(20)).collect(Collectors.toList());
+        System.out.printf("page 6 by query: %d items in %d ms%n",
+                page.size(), (System.nanoTime() - start) / 1_000_000);
+
+        Query<Product> topTen = Query.where(large)
+                .orderBy(Comparator.comparing((Product p) -> p.name).reversed())
+                .limit(10);
+        start = System.nanoTime();
+        List<Product> top = bf.query(products, topTen).collect(Collectors.toList());
+        System.out.printf("top 10 by name with a bounded heap in %d ms:%n", (System.nanoTime() - start) / 1_000_000);
+        top.forEach(p -> System.out.println(" - " + p.name));
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// breadth-first traversals over any RelationshipBrowser, one findAllChildrenOf/findAllParentsOf
+// call per visited person, which is cheap with an indexed browser. People are identified by
+// name: a name that was already visited is not expanded again, so cycles in the data terminate.
+// With a pool, generations of at least parallelThreshold people are expanded in parallel; the
+// browser then has to support concurrent reads.
+class RelationshipTraversal {
+    private final RelationshipBrowser browser;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    public RelationshipTraversal(RelationshipBrowser browser) {
+        this(browser, null, Integer.MAX_VALUE);
+    }
+
+    public RelationshipTraversal(RelationshipBrowser browser, ForkJoinPool pool, int parallelThreshold) {
+        this.browser = browser;
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Children, grandchildren and so on, down to maxDepth generations, in breadth-first order.
+     */
+    public List<Person> descendantsOf(String name, int maxDepth) {
+        return traverse(name, maxDepth, browser::findAllChildrenOf);
+    }
+
+    /**
+     * Parents, grandparents and so on, up to maxDepth generations, in breadth-first order.
+     */
+    public List<Person> ancestorsOf(String name, int maxDepth) {
+        return traverse(name, maxDepth, browser::findAllParentsOf);
+    }
+
+    /**
+     * Everybody sharing at least one parent with the given person.
+     */
+    public List<Person> siblingsOf(String name) {
+        Set<String> seen = new HashSet<>();
+        seen.add(name);
+        List<Person> siblings = new ArrayList<>();
+        for (Person parent : browser.findAllParentsOf(name))
+            for (Person child : browser.findAllChildrenOf(parent.name))
+                if (seen.add(child.name))
+                    siblings.add(child);
+        return siblings;
+    }
+
+    private List<Person> traverse(String name, int maxDepth, Function<String, List<Person>> step) {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        Set<String> visited = new HashSet<>();
+        visited.add(name);
+        List<Person> result = new ArrayList<>();
+        List<Person> frontier = maxDepth == 0 ? new ArrayList<>() : step.apply(name);
+        for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            List<Person> generation = new ArrayList<>();
+            for (Person p : frontier)
+                if (visited.add(p.name))
+                    generation.add(p);
+            result.addAll(generation);
+            if (depth < maxDepth)
+                frontier = expand(generation, step);
+        }
+        return result;
+    }
+
+    private List<Person> expand(List<Person> generation, Function<String, List<Person>> step) {
+        if (pool == null || generation.size() < parallelThreshold) {
+            List<Person> next = new ArrayList<>();
+            for (Person p : generation)
+                next.addAll(step.apply(p.name));
+            return next;
+        }
+        // a parallel stream started from inside a pool task runs in that pool
+        return pool.submit(() -> generation.parallelStream()
+                .flatMap(p -> step.apply(p.name).stream())
+                .collect(Collectors.toList())).join();
+    }
+}
+
+class RelationshipTraversalDemo {
+    public static void main(String[] args) {
+        Relationships relationships = new Relationships();
+        Person john = new Person("John");
+        Person chris = new Person("Chris");
+        Person matt = new Person("Matt");
+        Person alice = new Person("Alice");
+        relationships.addParentAndChild(john, chris);
+        relationships.addParentAndChild(john, matt);
+        relationships.addParentAndChild(chris, alice);
+
+        System.out.println("John's descendants: " + names(relationships.findAllDescendantsOf("John", 10)));
+        System.out.println("Alice's ancestors: " + names(relationships.findAllAncestorsOf("Alice", 10)));
+        System.out.println("Matt's siblings: " + names(relationships.findAllSiblingsOf("Matt")));
+
+        // a wide family tree: 4 generations with 30 children each
+        CompactRelationships big = new CompactRelationships();
+        List<Person> generation = new ArrayList<>();
+        generation.add(new Person("Root"));
+        for (int depth = 0; depth < 4; depth++) {
+            List<Person> next = new ArrayList<>();
+            for (Person parent : generation)
+                for (int i = 0; i < 30; i++) {
+                    Person child = new Person(parent.name + "." + i);
+                    big.addParentAndChild(parent, child);
+                    next.add(child);
+                }
+            generation = next;
+        }
+        big.compact();
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int sequential = new RelationshipTraversal(big).descendantsOf("Root", 4).size();
+            long sequentialTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int parallel = new RelationshipTraversal(big, ForkJoinPool.commonPool(), 1000)
+                    .descendantsOf("Root", 4).size();
+            long parallelTime = System.nanoTime() - start;
+            System.out.printf("descendants: sequential %d in %d ms, parallel %d in %d ms%n",
+                    sequential, sequentialTime / 1_000_000, parallel, parallelTime / 1_000_000);
+        }
+    }
+
+    private static List<String> names(List<Person> people) {
+        return people.stream().map(p -> p.name).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,354 @@
+package org.example.solid;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// loads journals saved as "N: text" lines from a URL without buffering the file. Lines are
+// parsed as the bytes arrive. If the server answers range requests, the file is cut into byte
+// ranges that are fetched in parallel, each over its own connection; a range whose connection
+// breaks is resumed from the last byte received. The lines cut in two at range edges are
+// stitched together afterwards, and the ranges are joined in file order like JournalLoader's chunks.
+class RemoteJournalLoader {
+    public static final int DEFAULT_PARTS = 4;
+    public static final int DEFAULT_RETRIES = 3;
+    private static final long MIN_RANGE = 1 << 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TIMEOUT_MILLIS = 30_000;
+    private static final long BACKOFF_MILLIS = 100;
+
+    private final int parts;
+    private final int retries;
+
+    public RemoteJournalLoader() {
+        this(DEFAULT_PARTS, DEFAULT_RETRIES);
+    }
+
+    /**
+     * @param parts   the most ranges fetched at the same time
+     * @param retries how often a range is retried after failing without progress
+     */
+    public RemoteJournalLoader(int parts, int retries) {
+        if (parts < 1)
+            throw new IllegalArgumentException("parts must be positive: " + parts);
+        this.parts = parts;
+        this.retries = retries;
+    }
+
+    // parses a stream of bytes into lines. Unless it starts at the beginning of the file, the
+    // bytes up to the first line break belong to a line that started in an earlier range (head);
+    // the bytes after the last line break belong to a line that goes on in a later one (tail).
+    static class LineParser {
+        final JournalLoader.Chunk chunk = new JournalLoader.Chunk();
+        byte[] head = new byte[0];
+        byte[] tail = new byte[0];
+        boolean cut = true; // no line break seen yet, so everything so far is head
+
+        private boolean atLineStart;
+        private byte[] line = new byte[256];
+        private int length;
+
+        LineParser(boolean atFileStart) {
+            this.atLineStart = atFileStart;
+            this.cut = !atFileStart;
+        }
+
+        void feed(byte[] bytes, int offset, int count) {
+            for (int i = offset; i < offset + count; i++) {
+                byte b = bytes[i];
+                if (b != '\n') {
+                    if (length == line.length)
+                        line = Arrays.copyOf(line, line.length * 2);
+                    line[length++] = b;
+                } else if (!atLineStart) {
+                    head = Arrays.copyOf(line, length);
+                    cut = false;
+                    atLineStart = true;
+                    length = 0;
+                } else {
+                    emit(chunk, line, length);
+                    length = 0;
+                }
+            }
+        }
+
+        void finish() {
+            if (cut)
+                head = Arrays.copyOf(line, length);
+            else
+                tail = Arrays.copyOf(line, length);
+            length = 0;
+        }
+
+        static void emit(JournalLoader.Chunk chunk, byte[] line, int length) {
+            if (length > 0 && line[length - 1] == '\r')
+                length--;
+            chunk.line(new String(line, 0, length, StandardCharsets.UTF_8), JournalLoader.entryNumber(line, length));
+        }
+    }
+
+    public void load(Journal journal, URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (!(connection instanceof HttpURLConnection)) {
+            journal.restore(JournalLoader.join(stream(connection)));
+            return;
+        }
+        // a one byte range tells whether ranges are supported and how big the file is
+        HttpURLConnection probe = (HttpURLConnection) connection;
+        configure(probe);
+        probe.setRequestProperty("Range", "bytes=0-0");
+        long size = probe.getResponseCode() == HttpURLConnection.HTTP_PARTIAL ? totalSize(probe) : -1;
+        if (size < 0) {
+            if (probe.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                journal.restore(JournalLoader.join(stream(probe)));
+                return;
+            }
+            probe.disconnect(); // e.g. 416 for an empty file
+            HttpURLConnection plain = (HttpURLConnection) url.openConnection();
+            configure(plain);
+            if (plain.getResponseCode() != HttpURLConnection.HTTP_OK)
+                throw new IOException("Unexpected response " + plain.getResponseCode() + " from " + url);
+            journal.restore(JournalLoader.join(stream(plain)));
+            return;
+        }
+        try (InputStream in = probe.getInputStream()) {
+            while (in.read() >= 0) {
+                // drain so the connection can be reused
+            }
+        }
+        journal.restore(JournalLoader.join(fetchRanges(url, size)));
+    }
+
+    // the whole response in one pass; without range support there is nothing to resume from
+    private List<JournalLoader.Chunk> stream(URLConnection connection) throws IOException {
+        LineParser parser = new LineParser(true);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = connection.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                parser.feed(buffer, 0, read);
+        }
+        parser.finish();
+        List<JournalLoader.Chunk> chunks = new ArrayList<>();
+        chunks.add(parser.chunk);
+        chunks.add(single(parser.tail));
+        return chunks;
+    }
+
+    private List<JournalLoader.Chunk> fetchRanges(URL url, long size) throws IOException {
+        int ranges = (int) Math.max(1, Math.min(parts, size / MIN_RANGE));
+        ExecutorService executor = Executors.newFixedThreadPool(ranges, r -> {
+            Thread thread = new Thread(r, "journal-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<LineParser> parsers = new ArrayList<>();
+        try {
+            List<Future<LineParser>> futures = new ArrayList<>();
+            for (int i = 0; i < ranges; i++) {
+                long start = size / ranges * i;
+                long end = i + 1 == ranges ? size : size / ranges * (i + 1);
+                futures.add(executor.submit(() -> fetchRange(url, start, end)));
+            }
+            for (Future<LineParser> future : futures)
+                parsers.add(future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Fetching " + url + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // stitch the lines cut at range edges: what is left of the previous ranges plus this head
+        List<JournalLoader.Chunk> chunks = new ArrayList<>();
+        byte[] carry = new byte[0];
+        for (int i = 0; i < parsers.size(); i++) {
+            LineParser parser = parsers.get(i);
+            if (parser.cut) {
+                carry = concat(carry, parser.head);
+                continue;
+            }
+            if (i > 0)
+                chunks.add(single(concat(carry, parser.head)));
+            chunks.add(parser.chunk);
+            carry = parser.tail;
+        }
+        chunks.add(single(carry));
+        return chunks;
+    }
+
+    // fetches bytes [start, end), resuming after broken connections
+    private LineParser fetchRange(URL url, long start, long end) throws IOException {
+        LineParser parser = new LineParser(start == 0);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = start;
+        long progressAt = start;
+        int failures = 0;
+        while (position < end) {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                configure(connection);
+                connection.setRequestProperty("Range", "bytes=" + position + "-" + (end - 1));
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+                    throw new IOException("Expected a partial response from " + url + " but got "
+                            + connection.getResponseCode());
+                try (InputStream in = connection.getInputStream()) {
+                    int read;
+                    while (position < end
+                            && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) >= 0) {
+                        parser.feed(buffer, 0, read);
+                        position += read;
+                    }
+                }
+                if (position < end)
+                    throw new IOException("Connection closed at byte " + position + " of " + end);
+            } catch (IOException e) {
+                connection.disconnect();
+                if (position > progressAt) {
+                    progressAt = position;
+                    failures = 0;
+                }
+                if (++failures > retries)
+                    throw e;
+                try {
+                    Thread.sleep(BACKOFF_MILLIS * failures);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while fetching " + url);
+                }
+            }
+        }
+        parser.finish();
+        return parser;
+    }
+
+    private static void configure(URLConnection connection) {
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+    }
+
+    // the size after the slash in "Content-Range: bytes 0-0/12345", or -1 if unknown
+    private static long totalSize(HttpURLConnection connection) {
+        String range = connection.getHeaderField("Content-Range");
+        if (range == null || range.indexOf('/') < 0)
+            return -1;
+        try {
+            return Long.parseLong(range.substring(range.indexOf('/') + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static JournalLoader.Chunk single(byte[] line) {
+        JournalLoader.Chunk chunk = new JournalLoader.Chunk();
+        if (line.length > 0)
+            LineParser.emit(chunk, line, line.length);
+        return chunk;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
+
+class RemoteJournalLoaderDemo {
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("journal", ".txt");
+        try (PrintStream out = new PrintStream(file.toFile(), "UTF-8")) {
+            for (int i = 1; i <= 1_000_000; i++)
+                out.println(i + ": Dear diary, entry number " + i + " of a journal on a server");
+        }
+
+        // a stand-in for the journal store: /ranged answers range requests and breaks the
+        // first few connections halfway, /plain only sends whole files
+        AtomicInteger failuresLeft = new AtomicInteger(3);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/ranged", exchange -> serve(exchange, file, true, failuresLeft));
+        server.createContext("/plain", exchange -> serve(exchange, file, false, failuresLeft));
+        server.start();
+        String base = "http://localhost:" + server.getAddress().getPort();
+        try {
+            Journal local = new Journal();
+            long start = System.nanoTime();
+            local.load(file.toString());
+            System.out.printf("local file:     %d entries in %d ms%n",
+                    local.getEntries().size(), (System.nanoTime() - start) / 1_000_000);
+
+            for (String path : new String[]{"/plain", "/ranged"}) {
+                Journal journal = new Journal();
+                start = System.nanoTime();
+                new Persistence().load(journal, new URL(base + path + "/journal.txt"));
+                System.out.printf("%-15s %d entries in %d ms, same as local: %b%n", path + ":",
+                        journal.getEntries().size(), (System.nanoTime() - start) / 1_000_000,
+                        journal.getEntries().equals(local.getEntries()));
+            }
+        } finally {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdown();
+            Files.delete(file);
+        }
+    }
+
+    private static void serve(HttpExchange exchange, Path file, boolean ranges, AtomicInteger failuresLeft)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            long start = 0, end = size;
+            if (ranges && range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-");
+                start = Long.parseLong(bounds[0]);
+                end = Math.min(size, Long.parseLong(bounds[1]) + 1);
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + size);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_PARTIAL, end - start);
+            } else {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0); // chunked
+            }
+            long stopAt = ranges && end - start > 1 && failuresLeft.getAndDecrement() > 0
+                    ? start + (end - start) / 2 : end;
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            OutputStream out = exchange.getResponseBody();
+            for (long position = start; position < stopAt; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), stopAt - position));
+                int read = channel.read(buffer, position);
+                out.write(buffer.array(), 0, read);
+                position += read;
+            }
+            out.flush();
+            if (stopAt < end) // the server drops the connection of a handler that fails
+                throw new IOException("Simulated connection loss");
+            out.close();
+        }
+    }
+}
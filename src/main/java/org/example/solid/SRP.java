@@ -2,7 +2,12 @@ package org.example.solid;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 class Journal {
@@ -10,12 +15,109 @@ class Journal {
 
     private static int count = 0;
 
+    // if set, every new entry is also appended to it
+    private JournalWriter writer;
+
+    // if set, kept up to date with the entries for searchAll/searchAny
+    private JournalIndex index;
+
     public void addEntry(String text) {
-        entries.add("" + (++count) + ": " + text);
+        String entry = "" + (++count) + ": " + text;
+        entries.add(entry);
+        if (index != null)
+            index.add(entry);
+        if (writer != null) {
+            try {
+                writer.append(entry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    List<String> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    void setWriter(JournalWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Builds a full-text index over the entries and keeps it up to date from now on.
+     */
+    public void enableSearch() {
+        if (index != null)
+            return;
+        index = new JournalIndex(this::entry);
+        for (String entry : entries)
+            index.add(entry);
     }
 
+    // the entry with the given number, found by binary search: entries are kept in number order,
+    // as they are added and saved; a scan covers journals loaded from files that are not
+    String entry(int number) {
+        int low = 0, high = entries.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = JournalIndex.number(entries.get(middle));
+            if (found < number)
+                low = middle + 1;
+            else if (found > number)
+                high = middle - 1;
+            else
+                return entries.get(middle);
+        }
+        for (String entry : entries)
+            if (JournalIndex.number(entry) == number)
+                return entry;
+        return null;
+    }
+
+    // entries containing every one of the words, ignoring case
+    public List<String> searchAll(String... words) {
+        return searchIndex().all(words);
+    }
+
+    // entries containing at least one of the words, ignoring case
+    public List<String> searchAny(String... words) {
+        return searchIndex().any(words);
+    }
+
+    private JournalIndex searchIndex() {
+        if (index == null)
+            throw new IllegalStateException("Search is not enabled, call enableSearch() first");
+        return index;
+    }
+
+    // entries read back from a saved journal, see JournalLoader
+    static class Loaded {
+        final List<String> entries;
+        final int maxNumber;
+
+        Loaded(List<String> entries, int maxNumber) {
+            this.entries = entries;
+            this.maxNumber = maxNumber;
+        }
+    }
+
+    // replaces the entries and makes sure new entries get numbers after the loaded ones
+    void restore(Loaded loaded) {
+        entries.clear();
+        entries.addAll(loaded.entries);
+        count = Math.max(count, loaded.maxNumber);
+        if (index != null) {
+            index.clear();
+            for (String entry : entries)
+                index.add(entry);
+        }
+    }
+
+    // only removes the entry in memory; a file kept up to date by Persistence.openWriter keeps it
     public void removeEntry(int index) {
-        entries.remove(index);
+        String entry = entries.remove(index);
+        if (this.index != null)
+            this.index.remove(entry);
     }
 
     @Override
@@ -30,10 +132,12 @@ class Journal {
         }
     }
 
-    public void load(String filename) {
+    public void load(String filename) throws IOException {
+        new JournalLoader().load(this, Paths.get(filename));
     }
 
-    public void load(URL url) {
+    public void load(URL url) throws IOException {
+        new RemoteJournalLoader().load(this, url);
     }
 }
 
@@ -46,12 +150,65 @@ class Persistence {
             }
     }
 
-    public void load(Journal journal, String filename) {
+    /**
+     * Keeps the file up to date by appending each new entry instead of rewriting the whole journal.
+     * If the file is empty or missing, the current entries are written first. A file that already
+     * has entries is continued: the journal must be empty, and is loaded from it, or hold exactly
+     * those entries, and new entries are numbered after the ones in the file.
+     * The file only ever grows: removeEntry doesn't change it, so removed entries come back when
+     * the journal is loaded from it again.
+     */
+    public JournalWriter openWriter(Journal journal, String filename, FsyncPolicy policy) throws IOException {
+        Path path = Paths.get(filename);
+        if (Files.exists(path) && Files.size(path) > 0) {
+            Journal.Loaded saved = new JournalLoader().read(path);
+            if (!journal.getEntries().isEmpty() && !journal.getEntries().equals(saved.entries))
+                throw new IllegalArgumentException("File " + filename + " holds a different journal");
+            journal.restore(saved);
+        }
+        JournalWriter writer = new JournalWriter(path, policy);
+        try {
+            if (Files.size(path) == 0)
+                for (String entry : journal.getEntries())
+                    writer.append(entry);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        journal.setWriter(writer);
+        return writer;
+    }
+
+    public void load(Journal journal, String filename) throws IOException {
+        new JournalLoader().load(journal, Paths.get(filename));
+    }
+
+    /**
+     * Streams the journal from the URL, in parallel ranges if the server supports them.
+     */
+    public void load(Journal journal, URL url) throws IOException {
+        new RemoteJournalLoader().load(journal, url);
     }
 
-    public void load(Journal journal, URL url) {
+    /**
+     * Saves the journal in the block-compressed format, see CompressedJournal.
+     */
+    public void saveCompressed(Journal journal, String filename) throws IOException {
+        CompressedJournal.write(journal.getEntries(), Paths.get(filename));
     }
 
+    public void loadCompressed(Journal journal, String filename) throws IOException {
+        List<String> entries;
+        try (CompressedJournalReader reader = new CompressedJournalReader(Paths.get(filename))) {
+            entries = reader.readAll();
+        }
+        int maxNumber = 0;
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            maxNumber = Math.max(maxNumber, JournalLoader.entryNumber(bytes, bytes.length));
+        }
+        journal.restore(new Journal.Loaded(entries, maxNumber));
+    }
 }
 
 class SRPDemo {
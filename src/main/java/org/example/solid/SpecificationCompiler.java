@@ -0,0 +1,346 @@
+package org.example.solid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+// turns a Specification tree into a flat predicate. A tree made only of Color and Size tests
+// (and And/Or/Not over them) only depends on the two ordinals, so it is evaluated once for every
+// combination up front and becomes a ProductMask: one bit test per product, no virtual calls.
+// Whatever else is left of nested And (and Or) chains becomes a single loop over an array of
+// terms. Pure AND terms are reordered at runtime so that the ones that reject most run first;
+// all other terms run in their declared order.
+// Compiled specifications are safe to share between threads.
+class SpecificationCompiler {
+    // how many sampled evaluations between two reorderings of a conjunction
+    static final int REORDER_INTERVAL = 64;
+    // one evaluation in this many is measured
+    static final int SAMPLE_RATE = 64;
+
+    private SpecificationCompiler() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Specification<T> compile(Specification<T> spec) {
+        if (ProductMask.maskable(spec))
+            return (Specification<T>) ProductMask.of((Specification<Product>) spec);
+        if (spec instanceof AndSpecification) {
+            List<Specification<T>> terms = new ArrayList<>();
+            flattenAnd(spec, terms);
+            terms = mergeMaskable(terms, true);
+            return terms.size() == 1 ? terms.get(0) : new Conjunction<>(terms);
+        }
+        if (spec instanceof OrSpecification) {
+            List<Specification<T>> terms = new ArrayList<>();
+            flattenOr(spec, terms);
+            terms = mergeMaskable(terms, false);
+            return terms.size() == 1 ? terms.get(0) : new Disjunction<>(terms);
+        }
+        if (spec instanceof NotSpecification) {
+            Specification<T> inner = ((NotSpecification<T>) spec).getSpec();
+            if (inner instanceof NotSpecification) // not not x == x
+                return compile(((NotSpecification<T>) inner).getSpec());
+            return new NotSpecification<>(compile(inner));
+        }
+        return spec;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void flattenAnd(Specification<T> spec, List<Specification<T>> terms) {
+        if (spec instanceof AndSpecification) {
+            flattenAnd(((AndSpecification<T>) spec).getFirst(), terms);
+            flattenAnd(((AndSpecification<T>) spec).getSecond(), terms);
+        } else {
+            terms.add(compile(spec));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void flattenOr(Specification<T> spec, List<Specification<T>> terms) {
+        if (spec instanceof OrSpecification) {
+            flattenOr(((OrSpecification<T>) spec).getFirst(), terms);
+            flattenOr(((OrSpecification<T>) spec).getSecond(), terms);
+        } else {
+            terms.add(compile(spec));
+        }
+    }
+
+    // combines the maskable terms of a flattened And/Or into one mask, which goes first as the cheapest term
+    @SuppressWarnings("unchecked")
+    private static <T> List<Specification<T>> mergeMaskable(List<Specification<T>> terms, boolean and) {
+        ProductMask mask = null;
+        List<Specification<T>> rest = new ArrayList<>();
+        for (Specification<T> term : terms) {
+            if (term instanceof ProductMask)
+                mask = mask == null ? (ProductMask) term
+                        : and ? mask.and((ProductMask) term) : mask.or((ProductMask) term);
+            else
+                rest.add(term);
+        }
+        if (mask != null)
+            rest.add(0, (Specification<T>) mask);
+        return rest;
+    }
+
+    // a flattened AND. The pure terms go first; they are total and free of side effects, so they
+    // can run in any order, and they are reordered by how often each one rejects an item. Only
+    // one evaluation in SAMPLE_RATE is measured, and that one runs every pure term, so the
+    // unmeasured evaluations write no shared state at all. The other terms keep their declared
+    // order and short-circuit like AndSpecification: a null check still guards what follows it,
+    // and a term never runs for an item it would not have seen in the tree (it may run for fewer,
+    // as the pure terms reject items before it).
+    static class Conjunction<T> implements Specification<T> {
+        private final Specification<T>[] pure;
+        private final Specification<T>[] others;
+        private final long[] tested, rejected; // guarded by this
+        private int samples;                   // guarded by this
+        private volatile int[] order;          // positions in pure, most selective first
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Conjunction(List<Specification<T>> specs) {
+            List<Specification<T>> pure = new ArrayList<>(), others = new ArrayList<>();
+            for (Specification<T> spec : specs)
+                (spec instanceof PureSpecification ? pure : others).add(spec);
+            this.pure = pure.toArray(new Specification[0]);
+            this.others = others.toArray(new Specification[0]);
+            this.tested = new long[this.pure.length];
+            this.rejected = new long[this.pure.length];
+            int[] order = new int[this.pure.length];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            this.order = order;
+        }
+
+        @Override
+        public boolean isSatisfied(T item) {
+            if (pure.length > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
+                if (!sample(item))
+                    return false;
+            } else {
+                for (int i : order)
+                    if (!pure[i].isSatisfied(item))
+                        return false;
+            }
+            for (Specification<T> spec : others)
+                if (!spec.isSatisfied(item))
+                    return false;
+            return true;
+        }
+
+        // the terms in the order they are evaluated in
+        List<Specification<T>> getTerms() {
+            List<Specification<T>> result = new ArrayList<>();
+            for (int i : order)
+                result.add(pure[i]);
+            result.addAll(Arrays.asList(others));
+            return result;
+        }
+
+        // whether all pure terms accept the item
+        private boolean sample(T item) {
+            boolean[] results = new boolean[pure.length];
+            boolean all = true;
+            for (int i = 0; i < pure.length; i++) {
+                results[i] = pure[i].isSatisfied(item);
+                all &= results[i];
+            }
+            synchronized (this) {
+                for (int i = 0; i < pure.length; i++) {
+                    tested[i]++;
+                    if (!results[i])
+                        rejected[i]++;
+                }
+                if (++samples >= REORDER_INTERVAL)
+                    reorder();
+            }
+            return all;
+        }
+
+        // called with the lock held
+        private void reorder() {
+            samples = 0;
+            Integer[] sorted = new Integer[pure.length];
+            for (int i = 0; i < sorted.length; i++)
+                sorted[i] = i;
+            Arrays.sort(sorted, Comparator.comparingDouble((Integer i) -> rejectionRate(i)).reversed());
+            for (int i = 0; i < pure.length; i++) {
+                // decay the history so that the order follows changes in the data
+                tested[i] >>= 1;
+                rejected[i] >>= 1;
+            }
+            int[] next = new int[sorted.length];
+            for (int i = 0; i < next.length; i++)
+                next[i] = sorted[i];
+            order = next;
+        }
+
+        private double rejectionRate(int i) {
+            return tested[i] == 0 ? 0 : (double) rejected[i] / tested[i];
+        }
+    }
+
+    static class Disjunction<T> implements Specification<T> {
+        private final Specification<T>[] terms;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Disjunction(List<Specification<T>> specs) {
+            terms = specs.toArray(new Specification[0]);
+        }
+
+        @Override
+        public boolean isSatisfied(T item) {
+            for (Specification<T> term : terms)
+                if (term.isSatisfied(item))
+                    return true;
+            return false;
+        }
+
+        List<Specification<T>> getTerms() {
+            return Arrays.asList(terms);
+        }
+    }
+}
+
+// a specification that is defined for every item and has no side effects, so it may be evaluated
+// early, more than once, or not at all; the compiler only ever reorders and samples these
+interface PureSpecification<T> extends Specification<T> {
+}
+
+// a product specification that only depends on color and size, as a bit per (color, size)
+// combination. Slot 0 of either attribute stands for null, slot ordinal + 1 for a value.
+final class ProductMask implements PureSpecification<Product> {
+    static final int COLOR_SLOTS = Color.values().length + 1;
+    static final int SIZE_SLOTS = Size.values().length + 1;
+    private static final Color[] COLORS = Color.values();
+    private static final Size[] SIZES = Size.values();
+
+    private final long[] bits = new long[(COLOR_SLOTS * SIZE_SLOTS + 63) >>> 6];
+
+    private ProductMask() {
+    }
+
+    /**
+     * Whether the specification is made only of Color/Size tests, and so can become a mask.
+     */
+    @SuppressWarnings("unchecked")
+    static boolean maskable(Specification<?> spec) {
+        if (spec instanceof ColorSpecification || spec instanceof SizeSpecification || spec instanceof ProductMask)
+            return true;
+        if (spec instanceof AndSpecification)
+            return maskable(((AndSpecification<Object>) spec).getFirst())
+                    && maskable(((AndSpecification<Object>) spec).getSecond());
+        if (spec instanceof OrSpecification)
+            return maskable(((OrSpecification<Object>) spec).getFirst())
+                    && maskable(((OrSpecification<Object>) spec).getSecond());
+        if (spec instanceof NotSpecification)
+            return maskable(((NotSpecification<Object>) spec).getSpec());
+        return false;
+    }
+
+    // evaluates the specification once for every combination of color and size
+    static ProductMask of(Specification<Product> spec) {
+        if (spec instanceof ProductMask)
+            return (ProductMask) spec;
+        ProductMask mask = new ProductMask();
+        Product probe = new Product(null, null, null);
+        for (int c = 0; c < COLOR_SLOTS; c++)
+            for (int s = 0; s < SIZE_SLOTS; s++) {
+                probe.color = c == 0 ? null : COLORS[c - 1];
+                probe.size = s == 0 ? null : SIZES[s - 1];
+                if (spec.isSatisfied(probe))
+                    mask.set(c * SIZE_SLOTS + s);
+            }
+        return mask;
+    }
+
+    ProductMask and(ProductMask other) {
+        ProductMask result = new ProductMask();
+        for (int i = 0; i < bits.length; i++)
+            result.bits[i] = bits[i] & other.bits[i];
+        return result;
+    }
+
+    ProductMask or(ProductMask other) {
+        ProductMask result = new ProductMask();
+        for (int i = 0; i < bits.length; i++)
+            result.bits[i] = bits[i] | other.bits[i];
+        return result;
+    }
+
+    /**
+     * Whether products in the given slots match; a slot is ordinal + 1, or 0 for null.
+     */
+    boolean matches(int colorSlot, int sizeSlot) {
+        return bit(colorSlot, sizeSlot) != 0;
+    }
+
+    // 1 if products in the given slots match, else 0
+    int bit(int colorSlot, int sizeSlot) {
+        int bit = colorSlot * SIZE_SLOTS + sizeSlot;
+        return (int) (bits[bit >>> 6] >>> bit) & 1;
+    }
+
+    @Override
+    public boolean isSatisfied(Product p) {
+        return matches(p.color == null ? 0 : p.color.ordinal() + 1, p.size == null ? 0 : p.size.ordinal() + 1);
+    }
+
+    private void set(int bit) {
+        bits[bit >>> 6] |= 1L << bit;
+    }
+}
+
+class SpecificationCompilerDemo {
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++)
+            products.add(new Product("Product " + i,
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+
+        // a dozen terms, the most selective one last
+        Specification<Product> spec = new NotSpecification<>(new SizeSpecification(Size.SMALL));
+        for (int i = 0; i < 10; i++)
+            spec = new AndSpecification<>(spec, new NotSpecification<>(new ColorSpecification(Color.RED)));
+        spec = new AndSpecification<>(spec, new OrSpecification<>(
+                new SizeSpecification(Size.LARGE), new SizeSpecification(Size.YUGE)));
+        spec = new AndSpecification<>(spec, new ColorSpecification(Color.BLUE));
+
+        Specification<Product> compiled = SpecificationCompiler.compile(spec);
+        BetterFilter bf = new BetterFilter();
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long nested = bf.filter(products, spec).count();
+            long nestedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long flat = bf.filter(products, compiled).count();
+            long flatTime = System.nanoTime() - start;
+
+            System.out.printf("nested tree %d in %d ms, compiled %d in %d ms%n",
+                    nested, nestedTime / 1_000_000, flat, flatTime / 1_000_000);
+        }
+
+        // a term the mask can't express keeps a conjunction, with the mask as its first term
+        Specification<Product> mixed = new AndSpecification<>(p -> p.name.endsWith("7"), spec);
+        Specification<Product> compiledMixed = SpecificationCompiler.compile(mixed);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long nested = bf.filter(products, mixed).count();
+            long nestedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long flat = bf.filter(products, compiledMixed).count();
+            long flatTime = System.nanoTime() - start;
+
+            System.out.printf("with a name test: nested tree %d in %d ms, compiled %d in %d ms%n",
+                    nested, nestedTime / 1_000_000, flat, flatTime / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncRelationshipBrowserTest {
+    private static Relationships family() {
+        Relationships relationships = new Relationships();
+        Person john = new Person("John");
+        relationships.addParentAndChild(john, new Person("Chris"));
+        relationships.addParentAndChild(john, new Person("Matt"));
+        return relationships;
+    }
+
+    @Test(timeout = 10_000)
+    public void aRejectedBatchFailsItsNamesAndFreesThem() throws Exception {
+        AtomicReference<ExecutorService> executor = new AtomicReference<>(Executors.newSingleThreadExecutor());
+        executor.get().shutdown();
+        AsyncRelationshipBrowser browser = new AsyncRelationshipBrowser(family(),
+                task -> executor.get().execute(task));
+
+        CompletableFuture<List<Person>> rejected = browser.findAllChildrenOfAsync("John");
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            fail("the lookup should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        // the name is no longer in flight: a lookup on a working executor runs it again
+        executor.set(Executors.newSingleThreadExecutor());
+        try {
+            assertEquals(2, browser.findAllChildrenOfAsync("John").get(5, TimeUnit.SECONDS).size());
+        } finally {
+            executor.get().shutdown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void concurrentLookupsShareOneBatch() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch secondLookupMade = new CountDownLatch(1);
+        AtomicInteger batches = new AtomicInteger();
+        try {
+            // the batch waits until the second lookup was made, so that one finds John in flight
+            SlowRelationshipBrowser slow = new SlowRelationshipBrowser(family(), 0) {
+                @Override
+                public Map<String, List<Person>> findAllChildrenOf(Collection<String> names) {
+                    batches.incrementAndGet();
+                    try {
+                        secondLookupMade.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.findAllChildrenOf(names);
+                }
+            };
+            AsyncRelationshipBrowser browser = new AsyncRelationshipBrowser(slow, executor);
+            CompletableFuture<Map<String, List<Person>>> first = browser.findAllChildrenOfAsync(List.of("John", "Chris"));
+            CompletableFuture<List<Person>> second = browser.findAllChildrenOfAsync("John");
+            secondLookupMade.countDown();
+            assertEquals(2, first.get().get("John").size());
+            assertEquals(0, first.get().get("Chris").size());
+            assertEquals(2, second.get().size());
+            assertEquals(1, batches.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
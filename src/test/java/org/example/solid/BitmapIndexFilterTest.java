@@ -0,0 +1,49 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitmapIndexFilterTest {
+    private final List<Product> products = new ArrayList<>(Arrays.asList(
+            new Product("Apple", Color.GREEN, Size.SMALL),
+            new Product("Ghost", null, Size.LARGE),
+            new Product("Tree", Color.GREEN, null),
+            new Product("House", Color.BLUE, Size.LARGE)));
+
+    private List<String> names(Filter<Product> filter, Specification<Product> spec) {
+        return filter.filter(products, spec).map(p -> p.name).collect(Collectors.toList());
+    }
+
+    private void assertSameAsScan(Specification<Product> spec) {
+        assertEquals(names(new BetterFilter(), spec), names(new BitmapIndexFilter(products), spec));
+    }
+
+    @Test
+    public void nullAttributesMatchLikeAScan() {
+        assertSameAsScan(new ColorSpecification(null));
+        assertSameAsScan(new SizeSpecification(null));
+        assertSameAsScan(new NotSpecification<>(new ColorSpecification(null)));
+        assertSameAsScan(new AndSpecification<>(new ColorSpecification(Color.GREEN), new SizeSpecification(null)));
+    }
+
+    @Test
+    public void combinationsMatchLikeAScan() {
+        assertSameAsScan(new AndSpecification<>(new ColorSpecification(Color.GREEN), new SizeSpecification(Size.SMALL)));
+        assertSameAsScan(new OrSpecification<>(new ColorSpecification(Color.BLUE), new SizeSpecification(Size.SMALL)));
+        assertSameAsScan(new NotSpecification<>(new SizeSpecification(Size.LARGE)));
+    }
+
+    @Test
+    public void refreshIndexesAppendedProducts() {
+        BitmapIndexFilter filter = new BitmapIndexFilter(products);
+        products.add(new Product("Nothing", null, null));
+        filter.refresh();
+        assertEquals(Arrays.asList("Ghost", "Nothing"), names(filter, new ColorSpecification(null)));
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ColumnarFilterTest {
+    private final List<Product> products = new ArrayList<>();
+    private final ProductTable table;
+
+    public ColumnarFilterTest() {
+        Random random = new Random(11);
+        List<Color> colors = new ArrayList<>(Arrays.asList(Color.values()));
+        colors.add(null);
+        List<Size> sizes = new ArrayList<>(Arrays.asList(Size.values()));
+        sizes.add(null);
+        for (int i = 0; i < 10_000; i++) // more than one block of the paging query
+            products.add(new Product("p" + random.nextInt(50),
+                    colors.get(random.nextInt(colors.size())), sizes.get(random.nextInt(sizes.size()))));
+        table = ProductTable.of(products);
+    }
+
+    // products out of a table are new objects, so compare what they hold
+    private static List<String> rows(Stream<Product> products) {
+        return products.map(p -> p.name + " " + p.color + " " + p.size).collect(Collectors.toList());
+    }
+
+    private static List<Specification<Product>> specifications() {
+        List<Specification<Product>> specs = new ArrayList<>();
+        specs.add(new ColorSpecification(Color.GREEN));
+        specs.add(new ColorSpecification(null));
+        specs.add(new SizeSpecification(null));
+        specs.add(new AndSpecification<>(new ColorSpecification(Color.BLUE), new SizeSpecification(Size.LARGE)));
+        specs.add(new AndSpecification<>(new SizeSpecification(null), p -> p.name.endsWith("7")));
+        specs.add(new OrSpecification<>(new ColorSpecification(Color.RED), new SizeSpecification(Size.YUGE)));
+        specs.add(new NotSpecification<>(new ColorSpecification(null)));
+        specs.add(p -> p.name.startsWith("p1")); // nothing to scan columns for: the fallback
+        specs.add(SpecificationCompiler.compile(new AndSpecification<>(
+                new NotSpecification<>(new ColorSpecification(Color.RED)),
+                new AndSpecification<>(p -> p.name.length() == 2, new SizeSpecification(Size.SMALL)))));
+        return specs;
+    }
+
+    @Test
+    public void filterMatchesBetterFilter() {
+        ColumnarFilter columnar = new ColumnarFilter();
+        BetterFilter better = new BetterFilter();
+        for (Specification<Product> spec : specifications()) {
+            assertEquals(rows(better.filter(products, spec)), rows(columnar.filter(table, spec)));
+            assertEquals(rows(better.filter(products, spec)), rows(columnar.filter(products, spec)));
+        }
+    }
+
+    @Test
+    public void pagesMatchBetterFilter() {
+        ColumnarFilter columnar = new ColumnarFilter();
+        BetterFilter better = new BetterFilter();
+        for (Specification<Product> spec : specifications())
+            for (int offset : new int[]{0, 5, 4090, 20_000}) {
+                Query<Product> query = Query.where(spec).offset(offset).limit(25);
+                assertEquals(rows(better.query(products, query)), rows(columnar.query(table, query)));
+            }
+    }
+
+    @Test
+    public void selectionVectorsOfARangeHoldItsMatchingRows() {
+        ColumnarFilter columnar = new ColumnarFilter();
+        Specification<Product> spec = new AndSpecification<>(new ColorSpecification(null), p -> p.size != Size.SMALL);
+        int[] all = columnar.selectionVector(table, spec);
+        int[] expected = Arrays.stream(all).filter(row -> row >= 1000 && row < 3000).toArray();
+        assertArrayEquals(expected, columnar.selectionVector(table, spec, 1000, 3000));
+        assertEquals(0, columnar.selectionVector(table, spec, 3000, 3000).length);
+    }
+
+    @Test
+    public void selectionVectorsRefuseRangesOutsideTheTable() {
+        ColumnarFilter columnar = new ColumnarFilter();
+        Specification<Product> spec = new ColorSpecification(Color.GREEN);
+        int[][] ranges = {{-1, 10}, {10, 5}, {0, table.size() + 1}};
+        for (int[] range : ranges) {
+            try {
+                columnar.selectionVector(table, spec, range[0], range[1]);
+                fail("rows " + range[0] + " to " + range[1]);
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+}
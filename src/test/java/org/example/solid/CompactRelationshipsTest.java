@@ -0,0 +1,102 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactRelationshipsTest {
+    private static List<String> names(List<Person> persons) {
+        return persons.stream().map(p -> p.name).collect(Collectors.toList());
+    }
+
+    private static CompactRelationships families(int count) {
+        CompactRelationships relationships = new CompactRelationships();
+        for (int i = 0; i < count; i++) {
+            Person parent = new Person("Parent " + i);
+            relationships.addParentAndChild(parent, new Person("Child " + i + "a"));
+            relationships.addParentAndChild(parent, new Person("Child " + i + "b"));
+        }
+        return relationships;
+    }
+
+    @Test
+    public void queriesSeeBufferedEdgesInTheOrderTheyWereAdded() {
+        CompactRelationships relationships = new CompactRelationships();
+        Person john = new Person("John");
+        relationships.addParentAndChild(john, new Person("Chris"));
+        relationships.compact();
+        relationships.addParentAndChild(john, new Person("Matt"));
+        relationships.addParentAndChild(new Person("Mary"), new Person("Matt"));
+
+        assertEquals(List.of("Chris", "Matt"), names(relationships.findAllChildrenOf("John")));
+        assertEquals(List.of("John", "Mary"), names(relationships.findAllParentsOf("Matt")));
+        relationships.compact();
+        assertEquals(List.of("Chris", "Matt"), names(relationships.findAllChildrenOf("John")));
+        assertEquals(List.of("John", "Mary"), names(relationships.findAllParentsOf("Matt")));
+    }
+
+    @Test
+    public void manyAdditionsStayCorrectAcrossAutomaticMerges() {
+        CompactRelationships relationships = families(50_000);
+        assertEquals(200_000, relationships.edgeCount());
+        for (int i = 0; i < 50_000; i += 997) {
+            assertEquals(List.of("Child " + i + "a", "Child " + i + "b"),
+                    names(relationships.findAllChildrenOf("Parent " + i)));
+            assertEquals(List.of("Parent " + i), names(relationships.findAllParentsOf("Child " + i + "b")));
+        }
+    }
+
+    @Test
+    public void interleavedAdditionsMatchAPlainAdjacencyList() {
+        CompactRelationships relationships = new CompactRelationships();
+        Map<String, List<String>> children = new HashMap<>();
+        Map<String, List<String>> parents = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 30_000; i++) { // several automatic merges, with queries in between
+            String parent = "P" + random.nextInt(500);
+            String child = "C" + random.nextInt(2000);
+            relationships.addParentAndChild(new Person(parent), new Person(child));
+            children.computeIfAbsent(parent, k -> new ArrayList<>()).add(child);
+            parents.computeIfAbsent(child, k -> new ArrayList<>()).add(parent);
+            if (i % 1000 == 0)
+                assertEquals(children.get(parent), names(relationships.findAllChildrenOf(parent)));
+        }
+        for (Map.Entry<String, List<String>> e : children.entrySet())
+            assertEquals(e.getValue(), names(relationships.findAllChildrenOf(e.getKey())));
+        for (Map.Entry<String, List<String>> e : parents.entrySet())
+            assertEquals(e.getValue(), names(relationships.findAllParentsOf(e.getKey())));
+    }
+
+    @Test(timeout = 30_000)
+    public void parallelQueriesOnAnUncompactedGraphAgree() throws Exception {
+        CompactRelationships relationships = families(20_000);
+        relationships.addParentAndChild(new Person("Parent 7"), new Person("Late child"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++)
+                results.add(executor.submit(() -> {
+                    boolean ok = true;
+                    for (int i = 0; i < 20_000; i++)
+                        ok &= relationships.findAllChildrenOf("Parent " + i).size() == (i == 7 ? 3 : 2);
+                    return ok;
+                }));
+            for (Future<Boolean> result : results)
+                assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(80_002, relationships.edgeCount());
+    }
+}
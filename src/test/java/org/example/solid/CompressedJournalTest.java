@@ -0,0 +1,93 @@
+package org.example.solid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressedJournalTest {
+    private final Path file;
+
+    public CompressedJournalTest() throws IOException {
+        file = Files.createTempFile("journal", ".jz");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static List<String> entries(int count) {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= count; i++)
+            entries.add(i + ": " + (i % 7 == 0 ? "Lieber Tagebuch, heute war schön ☀" : "I ate a bug " + i));
+        return entries;
+    }
+
+    @Test
+    public void readsEveryEntryBackInAnyOrder() throws IOException {
+        List<String> entries = entries(1000);
+        CompressedJournal.write(entries, file, 64, Deflater.BEST_SPEED);
+        try (CompressedJournalReader reader = new CompressedJournalReader(file)) {
+            assertEquals(1000, reader.size());
+            for (int n : new int[]{999, 0, 63, 64, 500, 1, 998})
+                assertEquals(entries.get(n), reader.readEntry(n));
+            assertEquals(entries, reader.readAll());
+        }
+        assertTrue(Files.size(file) < String.join("\n", entries).length());
+    }
+
+    @Test
+    public void anEmptyJournalHasNoEntries() throws IOException {
+        CompressedJournal.write(new ArrayList<>(), file);
+        try (CompressedJournalReader reader = new CompressedJournalReader(file)) {
+            assertEquals(0, reader.size());
+            assertEquals(new ArrayList<String>(), reader.readAll());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void entriesOutsideTheJournalAreRejected() throws IOException {
+        CompressedJournal.write(entries(10), file);
+        try (CompressedJournalReader reader = new CompressedJournalReader(file)) {
+            reader.readEntry(10);
+        }
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        Files.write(file, "1: not compressed at all, just a plain journal line".getBytes());
+        try (CompressedJournalReader reader = new CompressedJournalReader(file)) {
+            fail("read " + reader.size() + " entries from a plain file");
+        } catch (IOException expected) {
+            // not a compressed journal
+        }
+    }
+
+    @Test
+    public void persistenceRoundTripKeepsNumbering() throws IOException {
+        Journal journal = new Journal();
+        journal.addEntry("I cried today");
+        journal.addEntry("I ate a bug");
+        Persistence persistence = new Persistence();
+        persistence.saveCompressed(journal, file.toString());
+
+        Journal loaded = new Journal();
+        persistence.loadCompressed(loaded, file.toString());
+        assertEquals(journal.getEntries(), loaded.getEntries());
+        loaded.addEntry("next");
+        String last = loaded.getEntries().get(2);
+        int number = Integer.parseInt(last.substring(0, last.indexOf(':')));
+        String previous = journal.getEntries().get(1);
+        assertTrue(last, number > Integer.parseInt(previous.substring(0, previous.indexOf(':'))));
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentJournalTest {
+    @Test(timeout = 30_000)
+    public void concurrentProducersGetEveryNumberOnce() throws Exception {
+        int threads = 4, perThread = 20_000;
+        // a small ring, so producers keep running into a full ring and wrapping around
+        try (ConcurrentJournal journal = new ConcurrentJournal(64)) {
+            Set<Long> numbers = ConcurrentHashMap.newKeySet();
+            Thread[] producers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                producers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        long number = journal.addEntry(thread + "/" + i);
+                        if (!numbers.add(number))
+                            throw new AssertionError("number handed out twice: " + number);
+                    }
+                });
+                producers[t].start();
+            }
+            for (Thread producer : producers)
+                producer.join();
+            journal.flush();
+
+            assertEquals(threads * perThread, numbers.size());
+            assertEquals(threads * perThread, journal.size());
+            Set<String> texts = new HashSet<>();
+            for (long number = 1; number <= threads * perThread; number++) {
+                String entry = journal.getEntry(number);
+                assertTrue(entry, entry.startsWith(number + ": "));
+                texts.add(entry.substring(entry.indexOf(": ") + 2));
+            }
+            assertEquals(threads * perThread, texts.size());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void removeKeepsTheOtherNumbers() {
+        try (ConcurrentJournal journal = new ConcurrentJournal(8)) {
+            for (int i = 1; i <= 20; i++)
+                journal.addEntry("entry " + i);
+            // may still be in the ring: removeEntry waits for it to reach storage
+            assertTrue(journal.removeEntry(20));
+            assertTrue(journal.removeEntry(3));
+            assertFalse(journal.removeEntry(3));
+            assertFalse(journal.removeEntry(21));
+            assertNull(journal.getEntry(3));
+            assertEquals("4: entry 4", journal.getEntry(4));
+            assertEquals(18, journal.size());
+            assertEquals(21, journal.addEntry("next"));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void closeDrainsTheRing() {
+        ConcurrentJournal journal = new ConcurrentJournal(1024);
+        for (int i = 0; i < 1000; i++)
+            journal.addEntry("entry " + i);
+        journal.close();
+        assertEquals(1000, journal.size());
+        assertEquals("1000: entry 999", journal.getEntry(1000));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterCloseFails() {
+        ConcurrentJournal journal = new ConcurrentJournal();
+        journal.close();
+        journal.addEntry("too late");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new ConcurrentJournal(100);
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentRelationshipsTest {
+    @Test
+    public void trieVersionsStayUnchanged() {
+        HashTrie<Integer> empty = HashTrie.empty();
+        HashTrie<Integer> first = empty.put("a", 1, null);
+        HashTrie<Integer> second = first.put("a", 2, null).put("b", 3, null);
+        assertNull(empty.get("a"));
+        assertEquals(1, (long) first.get("a"));
+        assertNull(first.get("b"));
+        assertEquals(2, (long) second.get("a"));
+        assertEquals(3, (long) second.get("b"));
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+    }
+
+    @Test
+    public void trieKeepsNamesWithTheSameHash() {
+        // "Aa" and "BB" have the same hashCode, so they end up in one list below the last level
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        HashTrie<String> trie = HashTrie.<String>empty().put("Aa", "first", null).put("BB", "second", null);
+        HashTrie<String> replaced = trie.put("BB", "third", null);
+        assertEquals("first", trie.get("Aa"));
+        assertEquals("second", trie.get("BB"));
+        assertEquals("third", replaced.get("BB"));
+        assertEquals(2, replaced.size());
+        assertNull(trie.get("AaBB"));
+        assertEquals("none", trie.put(null, "none", null).get(null));
+    }
+
+    @Test
+    public void batchEditsDoNotLeakIntoThePreviousVersion() {
+        HashTrie<Integer> base = HashTrie.empty();
+        for (int i = 0; i < 10_000; i++)
+            base = base.put("name " + i, i, null);
+        Object edit = new Object();
+        HashTrie<Integer> batch = base;
+        for (int i = 0; i < 20_000; i += 2)
+            batch = batch.put("name " + i, -i, edit);
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(i < 10_000 ? (Integer) i : null, base.get("name " + i));
+            assertEquals(i % 2 == 0 ? (Integer) (-i) : i < 10_000 ? (Integer) i : null, batch.get("name " + i));
+        }
+        assertEquals(10_000, base.size());
+        assertEquals(15_000, batch.size());
+    }
+
+    @Test(timeout = 30_000)
+    public void readersOnlySeeWholeBatches() throws Exception {
+        ConcurrentRelationships relationships = new ConcurrentRelationships();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                // every batch gives a parent both children at once
+                for (int i = 0; i < 100; i++) {
+                    int children = relationships.findAllChildrenOf("Parent " + i).size();
+                    if (children % 2 != 0)
+                        torn.set("Parent " + i + " has " + children + " children");
+                }
+            }
+        });
+        reader.start();
+        for (int round = 0; round < 200; round++) {
+            int r = round;
+            relationships.update(batch -> {
+                for (int i = 0; i < 100; i++) {
+                    Person parent = new Person("Parent " + i);
+                    batch.addParentAndChild(parent, new Person("Child " + r + "." + i + "a"));
+                    batch.addParentAndChild(parent, new Person("Child " + r + "." + i + "b"));
+                }
+            });
+        }
+        running.set(false);
+        reader.join();
+        assertNull(torn.get());
+        assertEquals(200 * 100 * 4, relationships.edgeCount());
+        assertEquals(100 + 200 * 100 * 2, relationships.personCount());
+        List<String> names = new ArrayList<>();
+        for (Person child : relationships.findAllChildrenOf("Parent 7"))
+            names.add(child.name);
+        assertEquals(400, names.size());
+        assertEquals("Child 0.7a", names.get(0));
+        assertTrue(names.contains("Child 199.7b"));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DevicePoolTest {
+    private static Throwable failure(CompletableFuture<Document> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("the job should have failed");
+        return null;
+    }
+
+    @Test(timeout = 10_000)
+    public void jobsGoToTheLeastLoadedCapableDevice() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DevicePool pool = new DevicePool()
+                .registerPrinter("first", d -> release.await())
+                .registerScanner("scanner", d -> release.await())
+                .registerPrinter("second", d -> release.await())) {
+            List<CompletableFuture<Document>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+                futures.add(pool.submit(Capability.PRINT, new Document()));
+            List<DevicePool.Device> devices = pool.getDevices();
+            assertEquals(3, devices.get(0).load.get());
+            assertEquals(0, devices.get(1).load.get());
+            assertEquals(2, devices.get(2).load.get());
+
+            release.countDown();
+            for (CompletableFuture<Document> future : futures)
+                future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void anIdleDeviceStealsQueuedJobsItCanRun() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        try (DevicePool pool = new DevicePool()
+                .registerPrinter("stuck", d -> stuck.await())
+                .registerPrinter("free", d -> second.await())) {
+            CompletableFuture<Document> first = pool.submit(Capability.PRINT, new Document());
+            CompletableFuture<Document> other = pool.submit(Capability.PRINT, new Document());
+            CompletableFuture<Document> queued = pool.submit(Capability.PRINT, new Document());
+            DevicePool.Device free = pool.getDevices().get(1);
+
+            second.countDown();
+            other.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS); // taken off the stuck printer's queue
+            assertEquals(1, free.stolen.get());
+            assertFalse(first.isDone());
+            stuck.countDown();
+        }
+    }
+
+    @Test
+    public void unsupportedCapabilitiesFailRightAway() throws Exception {
+        try (DevicePool pool = new DevicePool().registerPrinter("printer", d -> { })) {
+            assertTrue(pool.supports(Capability.PRINT));
+            assertFalse(pool.supports(Capability.FAX));
+            assertTrue(failure(pool.submit(Capability.FAX, new Document())) instanceof UnsupportedOperationException);
+        }
+        try {
+            new DevicePool().register("printer", (Printer) d -> { }, Capability.SCAN);
+            fail("a Printer can't be registered to scan");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void anErrorFailsOnlyItsOwnJob() throws Exception {
+        AssertionError error = new AssertionError("device fault");
+        try (DevicePool pool = new DevicePool().registerPrinter("printer", d -> {
+            if (d == null)
+                throw error;
+        })) {
+            assertSame(error, failure(pool.submit(Capability.PRINT, null)));
+            Document next = new Document();
+            assertSame(next, pool.submit(Capability.PRINT, next).get(5, TimeUnit.SECONDS));
+        } // and the worker is still there to finish up: close returns
+    }
+
+    @Test(timeout = 10_000)
+    public void closeFinishesQueuedJobsAndRefusesNewOnes() throws Exception {
+        DevicePool pool = new DevicePool()
+                .registerPrinter("printer", d -> Thread.sleep(1))
+                .registerScanner("idle scanner", d -> { });
+        List<CompletableFuture<Document>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            futures.add(pool.submit(Capability.PRINT, new Document()));
+        pool.close();
+        for (CompletableFuture<Document> future : futures)
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        try {
+            pool.submit(Capability.PRINT, new Document());
+            fail("a closed pool should refuse jobs");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
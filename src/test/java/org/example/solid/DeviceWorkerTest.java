@@ -0,0 +1,139 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeviceWorkerTest {
+    // a device that holds every job until released
+    private static DeviceJob blockedOn(CountDownLatch release) {
+        return d -> release.await();
+    }
+
+    private static Throwable failure(CompletableFuture<Document> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("the job should have failed");
+        return null;
+    }
+
+    // fills the queue behind one job the device is busy with
+    private static void fill(DeviceWorker worker, int capacity, DeviceJob job) throws Exception {
+        worker.submit(new Document(), job);
+        while (worker.getQueueDepth() > 0) // wait for the worker to take the first job
+            Thread.sleep(1);
+        for (int i = 0; i < capacity; i++)
+            worker.submit(new Document(), job);
+    }
+
+    @Test(timeout = 10_000)
+    public void submitBlocksWhileTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DeviceWorker worker = new DeviceWorker("printer", 2)) {
+            fill(worker, 2, blockedOn(release));
+            List<CompletableFuture<Document>> late = new ArrayList<>();
+            Thread submitter = new Thread(() -> {
+                try {
+                    late.add(worker.submit(new Document(), d -> { }));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            submitter.start();
+            while (submitter.getState() != Thread.State.WAITING)
+                Thread.sleep(1);
+            assertEquals(2, worker.getQueueDepth());
+
+            release.countDown();
+            submitter.join();
+            late.get(0).get(5, TimeUnit.SECONDS);
+            assertEquals(2, worker.getMetrics().getMaxDepth());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void trySubmitGivesUpOnAFullQueue() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DeviceWorker worker = new DeviceWorker("printer", 1)) {
+            fill(worker, 1, blockedOn(release));
+            CompletableFuture<Document> rejected = worker.trySubmit(new Document(), d -> { }, 10, TimeUnit.MILLISECONDS);
+            assertTrue(failure(rejected) instanceof RejectedExecutionException);
+            assertEquals(2, worker.getMetrics().getSubmitted());
+
+            release.countDown();
+            worker.trySubmit(new Document(), d -> { }, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void closeFinishesQueuedJobsAndRefusesNewOnes() throws Exception {
+        DeviceWorker worker = new DeviceWorker("scanner", 8);
+        List<CompletableFuture<Document>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            futures.add(worker.submit(new Document(), d -> Thread.sleep(1)));
+        worker.close();
+        for (CompletableFuture<Document> future : futures)
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        assertEquals(8, worker.getMetrics().getCompleted());
+        try {
+            worker.submit(new Document(), d -> { });
+            fail("a closed worker should refuse jobs");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void closeWakesUpAnIdleWorker() {
+        DeviceWorker worker = new DeviceWorker("scanner", 4);
+        worker.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void anErrorFailsOnlyItsOwnJob() throws Exception {
+        AssertionError error = new AssertionError("device fault");
+        try (DeviceWorker worker = new DeviceWorker("printer", 4)) {
+            CompletableFuture<Document> broken = worker.submit(new Document(), d -> {
+                throw error;
+            });
+            Document next = new Document();
+            assertSame(error, failure(broken));
+            assertSame(next, worker.submit(next, d -> { }).get(5, TimeUnit.SECONDS));
+            assertEquals(1, worker.getMetrics().getFailed());
+            assertEquals(1, worker.getMetrics().getCompleted());
+        }
+    }
+
+    @Test
+    public void percentilesCoverTheMostRecentSamples() {
+        JobMetrics metrics = new JobMetrics();
+        assertEquals(0, metrics.percentile(0.5));
+        for (int i = 1; i <= 100; i++)
+            metrics.finished(i, true);
+        assertEquals(1, metrics.percentile(0));
+        assertEquals(51, metrics.percentile(0.5));
+        assertEquals(100, metrics.percentile(0.99));
+        assertEquals(100, metrics.percentile(1));
+
+        for (int i = 0; i < JobMetrics.SAMPLES; i++)
+            metrics.finished(1000, false);
+        assertEquals(1000, metrics.percentile(0));
+        assertEquals(100, metrics.getCompleted());
+        assertEquals(JobMetrics.SAMPLES, metrics.getFailed());
+        assertFalse(metrics.toString().isEmpty());
+    }
+}
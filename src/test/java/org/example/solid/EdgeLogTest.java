@@ -0,0 +1,285 @@
+package org.example.solid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class EdgeLogTest {
+    private final Path file;
+
+    public EdgeLogTest() throws IOException {
+        file = Files.createTempFile("edges", ".log");
+        Files.delete(file);
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private List<String> replay(Path path) throws IOException {
+        List<String> edges = new ArrayList<>();
+        try (EdgeLog log = EdgeLog.open(path)) {
+            log.replay((parent, child) -> edges.add(parent + ">" + child));
+        }
+        return edges;
+    }
+
+    private static List<String> names(List<Person> persons) {
+        return persons.stream().map(p -> p.name).collect(Collectors.toList());
+    }
+
+    @Test
+    public void replaysCommittedEdgesInOrder() throws IOException {
+        try (EdgeLog log = EdgeLog.open(file, 3, false)) {
+            log.append("John", "Chris");
+            log.append("John", "Matt");
+            log.append("Chris", "Zoë");
+            log.append("Mary", "Matt");
+        }
+        assertEquals(List.of("John>Chris", "John>Matt", "Chris>Zoë", "Mary>Matt"), replay(file));
+        try (EdgeLog log = EdgeLog.open(file)) {
+            assertEquals(4, log.getRecords());
+        }
+    }
+
+    @Test
+    public void truncatesATornTail() throws IOException {
+        try (EdgeLog log = EdgeLog.open(file, 2, false)) {
+            for (int i = 0; i < 5; i++)
+                log.append("Parent " + i, "Child " + i);
+        }
+        long committed = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // a segment header that promises more payload than was written
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 0, 0, 0, 2, 7, 7}), committed);
+        }
+        assertEquals(5, replay(file).size());
+        assertEquals(committed, Files.size(file));
+
+        // a segment that is complete but corrupted is dropped with everything after it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), committed - 20);
+        }
+        try (EdgeLog log = EdgeLog.open(file)) {
+            assertEquals(4, log.getRecords());
+        }
+        assertEquals(List.of("Parent 0>Child 0", "Parent 1>Child 1", "Parent 2>Child 2", "Parent 3>Child 3"),
+                replay(file));
+    }
+
+    @Test
+    public void committedRelationshipsSurviveACrash() throws IOException {
+        EdgeLog log = EdgeLog.open(file);
+        try {
+            Relationships relationships = new Relationships(log);
+            relationships.addParentAndChild(new Person("John"), new Person("Chris"));
+            relationships.commit();
+            relationships.addParentAndChild(new Person("John"), new Person("Matt"));
+            // the log is never closed, as in a crash: only the committed edge is on disk
+            assertEquals(List.of("John>Chris"), replay(file));
+        } finally {
+            log.close();
+        }
+        assertEquals(List.of("John>Chris", "John>Matt"), replay(file));
+    }
+
+    @Test
+    public void restoresOnePersonPerName() throws IOException {
+        try (EdgeLog log = EdgeLog.open(file)) {
+            Relationships relationships = new Relationships(log);
+            Person john = new Person("John");
+            relationships.addParentAndChild(john, new Person("Chris"));
+            relationships.addParentAndChild(john, new Person("Matt"));
+            relationships.addParentAndChild(new Person("Chris"), new Person("Ann"));
+        }
+        try (EdgeLog log = EdgeLog.open(file)) {
+            Relationships relationships = new Relationships(log);
+            assertEquals(List.of("Chris", "Matt"), names(relationships.findAllChildrenOf("John")));
+            assertEquals(List.of("John"), names(relationships.findAllParentsOf("Chris")));
+            assertEquals(List.of("Ann"), names(relationships.findAllChildrenOf("Chris")));
+            assertSame(relationships.findAllChildrenOf("John").get(0), relationships.findAllParentsOf("Ann").get(0));
+            assertEquals(6, relationships.getRelations().size());
+        }
+    }
+
+    // passes everything to a real channel, but positional writes fail once the budget is spent
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        long budget = Long.MAX_VALUE;
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            if (budget <= 0)
+                throw new IOException("No space left on device");
+            ByteBuffer part = src.duplicate();
+            part.limit((int) Math.min(part.limit(), part.position() + budget));
+            int written = channel.write(part, position);
+            src.position(src.position() + written);
+            budget -= written;
+            return written;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void aFailedCommitLeavesNoTornBytesBehind() throws IOException {
+        FailingChannel channel = new FailingChannel(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        try (EdgeLog log = EdgeLog.open(channel, 100, false)) {
+            log.append("John", "Chris");
+            log.commit();
+            long committed = log.size();
+
+            log.append("John", "Matt");
+            channel.budget = 10; // part of the next segment gets out, then the disk is full
+            try {
+                log.commit();
+                fail("expected the commit to fail");
+            } catch (IOException expected) {
+                // the records stay buffered
+            }
+            assertEquals(committed, log.size());
+            assertEquals(committed, Files.size(file));
+            assertEquals(1, log.getRecords());
+
+            channel.budget = Long.MAX_VALUE;
+            log.append("Mary", "Matt");
+            log.commit();
+            assertEquals(3, log.getRecords());
+        }
+        assertEquals(List.of("John>Chris", "John>Matt", "Mary>Matt"), replay(file));
+    }
+
+    @Test
+    public void edgesTheLogRefusesAreNotAddedInMemory() throws IOException {
+        FailingChannel channel = new FailingChannel(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        try (EdgeLog log = EdgeLog.open(channel, 1, false)) {
+            Relationships relationships = new Relationships(log);
+            try {
+                relationships.addParentAndChild(new Person(null), new Person("Chris"));
+                fail("expected the nameless person to be refused");
+            } catch (IllegalArgumentException expected) {
+                // refused before anything was written
+            }
+            channel.budget = 0;
+            try {
+                relationships.addParentAndChild(new Person("John"), new Person("Matt"));
+                fail("expected the write to fail");
+            } catch (UncheckedIOException expected) {
+                // every append commits, and this commit failed
+            }
+            assertEquals(0, relationships.getRelations().size());
+            assertEquals(0, relationships.findAllChildrenOf("John").size());
+
+            channel.budget = Long.MAX_VALUE;
+            relationships.addParentAndChild(new Person("John"), new Person("Chris"));
+            assertEquals(1, log.getRecords());
+        }
+        assertEquals(List.of("John>Chris"), replay(file));
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournalIndexTest {
+    private final Map<Integer, String> entries = new HashMap<>();
+    private final JournalIndex index = new JournalIndex(entries::get);
+
+    private String add(int number, String text) {
+        String entry = number + ": " + text;
+        entries.put(number, entry);
+        index.add(entry);
+        return entry;
+    }
+
+    @Test
+    public void answersAllAndAnyInNumberOrder() {
+        String one = add(1, "I ate a bug");
+        String two = add(2, "I ate a Cake");
+        String three = add(3, "the bug ate me");
+        assertEquals(Arrays.asList(one, three), index.all("bug", "ATE"));
+        assertEquals(Arrays.asList(one, two, three), index.any("cake", "bug"));
+        assertTrue(index.all("bug", "pizza").isEmpty());
+        assertTrue(index.any("pizza").isEmpty());
+    }
+
+    @Test
+    public void removedEntriesAreNotFound() {
+        String one = add(1, "I ate a bug");
+        String two = add(2, "I ate a bug again");
+        index.remove(one);
+        entries.remove(1);
+        assertEquals(Arrays.asList(two), index.all("ate", "bug"));
+        assertEquals(Arrays.asList(two), index.any("bug"));
+        assertEquals(1, index.staleNumbers());
+    }
+
+    @Test
+    public void aNumberCanComeBackWithOtherWords() {
+        String bug = add(5, "I ate a bug");
+        add(6, "I ate a bug too");
+        add(7, "I ate a bug as well");
+        index.remove(bug);
+        String cake = add(5, "I ate a cake");
+        assertEquals(Arrays.asList(cake), index.any("cake"));
+        assertEquals(2, index.any("bug").size());
+        assertEquals(0, index.staleNumbers());
+    }
+
+    @Test
+    public void purgesPostingListsOnceMostEntriesAreRemoved() {
+        for (int i = 1; i <= 100; i++)
+            add(i, "entry number " + i);
+        long bytes = index.postingBytes();
+        int terms = index.terms();
+        for (int i = 1; i <= 60; i++) {
+            index.remove(entries.remove(i));
+        }
+        assertTrue(index.staleNumbers() < 60);
+        assertTrue(index.postingBytes() < bytes);
+        assertTrue(index.terms() < terms);
+        List<String> found = index.all("entry", "number");
+        assertEquals(40, found.size());
+        assertEquals("61: entry number 61", found.get(0));
+        assertTrue(index.any("60").isEmpty());
+    }
+
+    @Test
+    public void journalSearchFollowsRemovalAndRestore() {
+        Journal journal = new Journal();
+        journal.enableSearch();
+        journal.addEntry("I ate a bug");
+        journal.addEntry("I cried today");
+        journal.addEntry("I ate another bug");
+        journal.removeEntry(0);
+        assertEquals(Arrays.asList(journal.getEntries().get(1)), journal.searchAll("bug"));
+
+        List<String> saved = Arrays.asList("10: a bug", "3: another bug", "12: no insects");
+        journal.restore(new Journal.Loaded(saved, 12));
+        assertEquals(Arrays.asList("3: another bug", "10: a bug"), journal.searchAny("bug"));
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.solid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournalLoaderTest {
+    private static final String NL = System.lineSeparator();
+
+    private final Path file;
+
+    public JournalLoaderTest() throws IOException {
+        file = Files.createTempFile("journal", ".txt");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // with this many chunks, a small file is cut at almost every line
+    private List<String> loadInChunks(int parts) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parts);
+        try {
+            return new JournalLoader(pool).read(file).entries;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static JournalLoader.Chunk parse(String content) {
+        return JournalLoader.parse(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void chunksStartOnlyAtLineBoundaries() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            StringBuilder entry = new StringBuilder(i + ": entry ");
+            for (int k = 0; k < i % 37; k++)
+                entry.append('x');
+            content.append(entry).append('\n');
+            expected.add(entry.toString());
+        }
+        write(content.toString());
+        for (int parts : new int[]{1, 3, 16, 64, 500})
+            assertEquals("in " + parts + " parts", expected, loadInChunks(parts));
+    }
+
+    @Test
+    public void continuationLinesCrossChunkBoundaries() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            StringBuilder entry = new StringBuilder(i + ": first line");
+            content.append(entry).append('\n');
+            for (int k = 0; k < i % 5; k++) {
+                content.append("continued ").append(k).append('\n');
+                entry.append(NL).append("continued ").append(k);
+            }
+            expected.add(entry.toString());
+        }
+        write(content.toString());
+        for (int parts : new int[]{1, 7, 64, 500})
+            assertEquals("in " + parts + " parts", expected, loadInChunks(parts));
+    }
+
+    @Test
+    public void leadingLinesOfAChunkJoinTheLastEntryBeforeIt() {
+        List<JournalLoader.Chunk> chunks = new ArrayList<>();
+        chunks.add(parse("1: a\nmore\n"));
+        chunks.add(parse("still more\n"));
+        chunks.add(parse("and more\n2: b\n"));
+        Journal.Loaded loaded = JournalLoader.join(chunks);
+        assertEquals(List.of("1: a" + NL + "more" + NL + "still more" + NL + "and more", "2: b"), loaded.entries);
+        assertEquals(2, loaded.maxNumber);
+    }
+
+    @Test
+    public void crlfLineEndingsAreStripped() throws IOException {
+        write("1: first\r\ncontinued\r\n2: second\r\n");
+        for (int parts : new int[]{1, 8})
+            assertEquals(List.of("1: first" + NL + "continued", "2: second"), loadInChunks(parts));
+    }
+
+    @Test
+    public void emptyFilesAndEmptyJournalsLoadNoEntries() throws IOException {
+        Journal.Loaded loaded = new JournalLoader().read(file);
+        assertTrue(loaded.entries.isEmpty());
+        assertEquals(0, loaded.maxNumber);
+
+        write(NL); // how an empty journal is saved
+        assertTrue(loadInChunks(4).isEmpty());
+    }
+
+    @Test
+    public void loadingMovesTheCounterPastTheLoadedNumbers() throws IOException {
+        Journal journal = new Journal();
+        journal.addEntry("probe");
+        int next = Integer.parseInt(journal.getEntries().get(0).split(":")[0]) + 1000;
+        write("1: old\n" + next + ": newest\n5: older\n");
+
+        new JournalLoader().load(journal, file);
+        assertEquals(List.of("1: old", next + ": newest", "5: older"), journal.getEntries());
+        journal.addEntry("after loading");
+        assertEquals((next + 1) + ": after loading", journal.getEntries().get(3));
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JournalSegmentsTest {
+    private static final int SEGMENT = JournalSegments.SEGMENT_SIZE;
+
+    private static void append(JournalSegments segments, int count) {
+        long first = segments.lastNumber() + 1;
+        List<String> entries = new ArrayList<>();
+        for (long number = first; number < first + count; number++)
+            entries.add(number + ": entry");
+        segments.append(first, entries);
+    }
+
+    @Test
+    public void compactionKeepsNumbersAndLookups() {
+        JournalSegments segments = new JournalSegments();
+        append(segments, 3 * SEGMENT);
+        for (long number = 1; number <= 3 * SEGMENT; number += 2)
+            assertTrue(segments.remove(number));
+        assertEquals(2, segments.compact(0.5)); // the third segment is the tail
+        for (long number = 1; number <= 3 * SEGMENT; number++)
+            assertEquals(number % 2 == 0 ? number + ": entry" : null, segments.get(number));
+        assertFalse(segments.remove(1));
+        assertTrue(segments.remove(2));
+        assertNull(segments.get(2));
+        assertEquals(3 * SEGMENT / 2 - 1, segments.size());
+    }
+
+    @Test
+    public void segmentsEmptiedWhileTheTailAreDroppedByCompaction() {
+        JournalSegments segments = new JournalSegments();
+        append(segments, SEGMENT);
+        for (long number = 1; number <= SEGMENT; number++)
+            segments.remove(number);
+        assertEquals(1, segments.segmentCount()); // still the tail, so kept
+        append(segments, 10);
+        assertEquals(2, segments.segmentCount());
+
+        assertEquals(1, segments.compact(0.5));
+        assertEquals(1, segments.segmentCount());
+        assertEquals(10, segments.size());
+        assertEquals((SEGMENT + 1) + ": entry", segments.get(SEGMENT + 1));
+        assertNull(segments.get(1));
+    }
+
+    @Test
+    public void emptiedSegmentsThatAreNotTheTailGoRightAway() {
+        JournalSegments segments = new JournalSegments();
+        append(segments, SEGMENT + 1);
+        for (long number = 1; number <= SEGMENT; number++)
+            segments.remove(number);
+        assertEquals(1, segments.segmentCount());
+        assertEquals(0, segments.compact(0.5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void appendsMustContinueTheNumbering() {
+        JournalSegments segments = new JournalSegments();
+        append(segments, 5);
+        segments.append(7, List.of("7: gap"));
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.solid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JournalWriterTest {
+    private final Path file;
+
+    public JournalWriterTest() throws IOException {
+        file = Files.createTempFile("journal", ".txt");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test(timeout = 10_000)
+    public void intervalSyncsAnIdleWriter() throws Exception {
+        try (JournalWriter writer = new JournalWriter(file, FsyncPolicy.INTERVAL, 20)) {
+            writer.append("1: the only entry");
+            assertEquals(0, writer.getSyncs());
+            while (writer.getSyncs() == 0)
+                Thread.sleep(5);
+            // nothing new was written, so the next intervals don't sync again
+            Thread.sleep(100);
+            assertEquals(1, writer.getSyncs());
+        }
+    }
+
+    @Test
+    public void alwaysSyncsEveryCommit() throws IOException {
+        try (JournalWriter writer = new JournalWriter(file, FsyncPolicy.ALWAYS)) {
+            for (int i = 0; i < 5; i++)
+                writer.append(i + ": entry");
+            assertEquals(writer.getCommits(), writer.getSyncs());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void concurrentAppendsAllReachTheFile() throws Exception {
+        JournalWriter writer = new JournalWriter(file, FsyncPolicy.NEVER);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1000; i++)
+                        writer.append(thread + "-" + i + ": entry");
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        writer.close();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(4000, lines.size());
+        assertEquals(4000, writer.getWritten());
+        assertTrue(writer.getCommits() <= 4000);
+    }
+
+    @Test(expected = IOException.class)
+    public void appendAfterCloseFails() throws IOException {
+        JournalWriter writer = new JournalWriter(file, FsyncPolicy.INTERVAL, 10);
+        writer.close();
+        writer.append("1: too late");
+    }
+
+    @Test
+    public void reopenedFilesContinueTheirNumbering() throws IOException {
+        Persistence persistence = new Persistence();
+        Journal first = new Journal();
+        first.addEntry("I cried today");
+        try (JournalWriter ignored = persistence.openWriter(first, file.toString(), FsyncPolicy.NEVER)) {
+            first.addEntry("I ate a bug");
+        }
+
+        // after a restart: an empty journal picks up the file, the numbers go on after it
+        Journal second = new Journal();
+        try (JournalWriter ignored = persistence.openWriter(second, file.toString(), FsyncPolicy.NEVER)) {
+            assertEquals(first.getEntries(), second.getEntries());
+            second.addEntry("I ate another bug");
+        }
+        Journal loaded = new Journal();
+        loaded.load(file.toString());
+        List<String> entries = loaded.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(second.getEntries(), entries);
+        assertTrue(JournalIndex.number(entries.get(2)) > JournalIndex.number(entries.get(1)));
+    }
+
+    @Test
+    public void filesOfAnotherJournalAreRefused() throws IOException {
+        Persistence persistence = new Persistence();
+        Journal first = new Journal();
+        first.addEntry("I cried today");
+        persistence.openWriter(first, file.toString(), FsyncPolicy.NEVER).close();
+
+        Journal other = new Journal();
+        other.addEntry("Something else entirely");
+        try {
+            persistence.openWriter(other, file.toString(), FsyncPolicy.NEVER);
+            fail("expected the file to be refused");
+        } catch (IllegalArgumentException expected) {
+            // appending would mix two journals in one file
+        }
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+}
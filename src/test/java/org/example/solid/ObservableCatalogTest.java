@@ -0,0 +1,84 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ObservableCatalogTest {
+    private final ObservableCatalog catalog = new ObservableCatalog();
+    private final Product apple = new Product("Apple", Color.GREEN, Size.SMALL);
+    private final Product tree = new Product("Tree", Color.GREEN, Size.LARGE);
+    private final Product house = new Product("House", Color.BLUE, Size.LARGE);
+    private final Product leaf = new Product("Leaf", Color.GREEN, Size.SMALL);
+
+    public ObservableCatalogTest() {
+        catalog.add(apple);
+        catalog.add(tree);
+        catalog.add(house);
+        catalog.add(leaf);
+    }
+
+    private static List<String> names(CatalogView view) {
+        return view.stream().map(p -> p.name).collect(Collectors.toList());
+    }
+
+    @Test
+    public void viewsFollowAdditionsAndRemovals() {
+        CatalogView green = catalog.registerView(new ColorSpecification(Color.GREEN));
+        assertEquals(List.of("Apple", "Tree", "Leaf"), names(green));
+
+        catalog.add(new Product("Grass", Color.GREEN, Size.SMALL));
+        catalog.add(new Product("Sky", Color.BLUE, Size.YUGE));
+        assertFalse(catalog.add(apple));
+        assertEquals(List.of("Apple", "Tree", "Leaf", "Grass"), names(green));
+
+        catalog.remove(tree);
+        catalog.remove(house);
+        assertEquals(List.of("Apple", "Leaf", "Grass"), names(green));
+        assertEquals(3, green.size());
+    }
+
+    @Test
+    public void productsThatStartMatchingTakeTheirCatalogPlace() {
+        CatalogView large = catalog.registerView(new SizeSpecification(Size.LARGE));
+        catalog.update(apple, p -> p.size = Size.LARGE);
+        assertEquals(List.of("Apple", "Tree", "House"), names(large));
+
+        catalog.update(tree, p -> p.size = Size.SMALL);
+        catalog.update(leaf, p -> p.size = Size.LARGE);
+        assertEquals(List.of("Apple", "House", "Leaf"), names(large));
+
+        tree.size = Size.LARGE;
+        catalog.changed(tree);
+        assertEquals(List.of("Apple", "Tree", "House", "Leaf"), names(large));
+
+        // removed and added again, it goes to the end like any new product
+        catalog.remove(apple);
+        catalog.add(apple);
+        assertEquals(List.of("Tree", "House", "Leaf", "Apple"), names(large));
+    }
+
+    @Test
+    public void updatesOfProductsOutsideTheCatalogChangeNothing() {
+        Product stranger = new Product("Stranger", Color.RED, Size.SMALL);
+        try {
+            catalog.update(stranger, p -> p.size = Size.LARGE);
+            fail("the product is not in the catalog");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(Size.SMALL, stranger.size);
+    }
+
+    @Test
+    public void unregisteredViewsStopChanging() {
+        CatalogView blue = catalog.registerView(new ColorSpecification(Color.BLUE));
+        catalog.unregisterView(blue);
+        catalog.update(apple, p -> p.color = Color.BLUE);
+        assertEquals(List.of("House"), names(blue));
+    }
+}
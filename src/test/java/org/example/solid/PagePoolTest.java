@@ -0,0 +1,79 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class PagePoolTest {
+    private final PagePool pool = new PagePool(16, 8);
+
+    @Test
+    public void releasedPagesCannotBeRetainedAgain() {
+        Page page = pool.acquire();
+        page.release();
+        try {
+            page.retain();
+            fail("expected retain to fail");
+        } catch (IllegalStateException expected) {
+            // the count must still be zero, so the next release fails instead of recycling again
+        }
+        try {
+            page.release();
+            fail("expected release to fail");
+        } catch (IllegalStateException expected) {
+            // nothing is recycled twice
+        }
+        assertEquals(1, pool.getPooled());
+        assertNotSame(pool.acquire().writable(), pool.acquire().writable());
+    }
+
+    @Test
+    public void theBufferReturnsWithTheLastReference() {
+        Page page = pool.acquire();
+        page.writable().put((byte) 42);
+        Page shared = page.retain();
+        assertSame(page, shared);
+        page.release();
+        assertEquals(0, pool.getPooled());
+        assertEquals(1, shared.content().remaining());
+        shared.release();
+        assertEquals(1, pool.getPooled());
+
+        Page next = pool.acquire();
+        assertEquals(0, next.length());
+        assertEquals(1, pool.getReused());
+        assertEquals(1, pool.getAllocated());
+    }
+
+    @Test
+    public void releasedPagesCannotBeReadOrWritten() {
+        Page page = pool.acquire();
+        page.release();
+        try {
+            page.writable();
+            fail("expected writable to fail");
+        } catch (IllegalStateException expected) {
+            // the buffer may belong to another page by now
+        }
+        try {
+            page.content();
+            fail("expected content to fail");
+        } catch (IllegalStateException expected) {
+            // same
+        }
+    }
+
+    @Test
+    public void freeBuffersBeyondTheLimitAreDropped() {
+        Page[] pages = new Page[10];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = pool.acquire();
+        for (Page page : pages)
+            page.release();
+        assertEquals(8, pool.getPooled());
+        assertEquals(10, pool.getAllocated());
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelFilterTest {
+    private static final Specification<Product> LARGE_GREEN = new AndSpecification<>(
+            new ColorSpecification(Color.GREEN), new SizeSpecification(Size.LARGE));
+
+    private static List<Product> products(int count) {
+        Random random = new Random(5);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            products.add(new Product("Product " + i, colors[random.nextInt(colors.length)],
+                    sizes[random.nextInt(sizes.length)]));
+        return products;
+    }
+
+    @Test
+    public void orderedResultsKeepEncounterOrder() {
+        List<Product> products = products(50_000);
+        List<Product> expected = new BetterFilter().filter(products, LARGE_GREEN).collect(Collectors.toList());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[]{1, 100, 8192, 100_000}) {
+                ParallelFilter<Product> filter = new ParallelFilter<>(pool, threshold, true);
+                assertEquals("threshold " + threshold, expected,
+                        filter.filter(products, LARGE_GREEN).collect(Collectors.toList()));
+            }
+            // a list without cheap get(i) is copied first, the order stays the same
+            assertEquals(expected, new ParallelFilter<Product>(pool, 100, true)
+                    .filter(new LinkedList<>(products), LARGE_GREEN).collect(Collectors.toList()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void unorderedResultsHoldTheSameProducts() {
+        List<Product> products = products(50_000);
+        Comparator<Product> byName = Comparator.comparing(p -> p.name);
+        List<Product> expected = new BetterFilter().filter(products, LARGE_GREEN)
+                .sorted(byName).collect(Collectors.toList());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[]{1, 100, 8192}) {
+                ParallelFilter<Product> filter = new ParallelFilter<>(pool, threshold, false);
+                assertEquals("threshold " + threshold, expected,
+                        filter.filter(products, LARGE_GREEN).sorted(byName).collect(Collectors.toList()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void pagedQueriesMatchBetterFilter() {
+        List<Product> products = products(20_000);
+        Query<Product> page = Query.where(LARGE_GREEN).offset(300).limit(50);
+        assertEquals(new BetterFilter().query(products, page).collect(Collectors.toList()),
+                new ParallelFilter<Product>().query(products, page).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void thresholdsMustBePositive() {
+        try {
+            new ParallelFilter<Product>(ForkJoinPool.commonPool(), 0, true);
+            fail("a threshold of 0 should be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
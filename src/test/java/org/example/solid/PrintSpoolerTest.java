@@ -0,0 +1,218 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrintSpoolerTest {
+    private final PagePool pool = new PagePool(16, 1024);
+
+    // records the first int of every page it is given, one list per device call
+    static class RecordingPrinter implements Printer {
+        final List<List<Integer>> calls = new ArrayList<>();
+
+        public synchronized void Print(Document d) {
+            List<Integer> pages = new ArrayList<>();
+            for (Page page : d.getPages())
+                pages.add(page.content().getInt());
+            calls.add(pages);
+        }
+    }
+
+    // buffers are reused by later documents, so count what is back rather than what was used
+    private void assertAllPagesReturned() {
+        assertEquals(pool.getAllocated(), pool.getPooled());
+    }
+
+    private Document document(int... values) {
+        Document d = new Document();
+        for (int value : values) {
+            Page page = pool.acquire();
+            page.writable().putInt(value);
+            d.addPage(page);
+        }
+        return d;
+    }
+
+    @Test
+    public void documentsClosedRightAfterSubmittingAreStillPrinted() throws Exception {
+        RecordingPrinter device = new RecordingPrinter();
+        try (PrintSpooler spooler = new PrintSpooler(device, 100, 1000)) {
+            Document d = document(1, 2, 3);
+            CompletableFuture<Void> printed = spooler.submit(Arrays.asList(d));
+            d.close();
+            spooler.flush().get();
+            printed.get();
+        }
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3)), device.calls);
+        assertAllPagesReturned(); // every page went back to the pool
+    }
+
+    @Test
+    public void smallJobsAreCoalescedIntoOneDeviceCall() throws Exception {
+        RecordingPrinter device = new RecordingPrinter();
+        try (PrintSpooler spooler = new PrintSpooler(device, 100, 60_000)) {
+            List<CompletableFuture<Void>> printed = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                try (Document d = document(2 * i, 2 * i + 1)) {
+                    printed.add(spooler.submit(Arrays.asList(d)));
+                }
+            }
+            spooler.flush().get();
+            for (CompletableFuture<Void> future : printed)
+                assertTrue(future.isDone());
+            assertEquals(10, spooler.getJobs());
+        }
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> call : device.calls)
+            all.addAll(call);
+        for (int i = 0; i < 20; i++)
+            assertEquals(i, (int) all.get(i));
+        assertTrue(device.calls.size() < 10);
+        assertAllPagesReturned();
+    }
+
+    @Test
+    public void batchesAreCutAtMaxBatchPages() throws Exception {
+        RecordingPrinter device = new RecordingPrinter();
+        try (PrintSpooler spooler = new PrintSpooler(device, 4, 60_000)) {
+            for (int i = 0; i < 6; i++) {
+                try (Document d = document(i, i)) {
+                    spooler.submit(Arrays.asList(d));
+                }
+            }
+            spooler.flush().get();
+        }
+        for (List<Integer> call : device.calls)
+            assertTrue(call.size() <= 4);
+        assertAllPagesReturned();
+    }
+
+    @Test(timeout = 10_000)
+    public void aBurstOnADeviceWithACostPerCallTakesFewCalls() throws Exception {
+        RecordingPrinter device = new RecordingPrinter() {
+            @Override
+            public synchronized void Print(Document d) {
+                super.Print(d);
+                AsyncMultiFunctionMachineDemo.sleep(10); // the round trip to the device
+            }
+        };
+        int jobs = 64;
+        try (PrintSpooler spooler = new PrintSpooler(device, 16, 5)) {
+            List<CompletableFuture<Void>> printed = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                try (Document d = document(i)) {
+                    printed.add(spooler.submit(Arrays.asList(d)));
+                }
+            }
+            CompletableFuture.allOf(printed.toArray(new CompletableFuture<?>[0])).get();
+            assertEquals(jobs, spooler.getJobs());
+            // printing them one by one would take a call, and a round trip, per job
+            assertTrue(spooler.getBatches() + " calls", spooler.getBatches() <= jobs / 8);
+        }
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> call : device.calls) {
+            assertTrue(call.size() <= 16);
+            all.addAll(call);
+        }
+        for (int i = 0; i < jobs; i++)
+            assertEquals(i, (int) all.get(i));
+        assertAllPagesReturned();
+    }
+
+    @Test
+    public void emptyDocumentsTakeNoRoomInABatch() throws Exception {
+        RecordingPrinter device = new RecordingPrinter();
+        try (PrintSpooler spooler = new PrintSpooler(device, 2, 60_000);
+             Document empty = new Document();
+             Document d = document(1, 2)) {
+            spooler.submit(Arrays.asList(empty));
+            spooler.submit(Arrays.asList(empty, d));
+            spooler.flush().get();
+        }
+        assertEquals(Arrays.asList(Arrays.asList(1, 2)), device.calls);
+    }
+
+    @Test(timeout = 10_000)
+    public void anErrorFromTheDeviceFailsItsBatchOnly() throws Exception {
+        AssertionError fault = new AssertionError("device fault");
+        RecordingPrinter device = new RecordingPrinter() {
+            @Override
+            public synchronized void Print(Document d) {
+                if (calls.isEmpty()) {
+                    calls.add(new ArrayList<>());
+                    throw fault;
+                }
+                super.Print(d);
+            }
+        };
+        try (PrintSpooler spooler = new PrintSpooler(device, 100, 1);
+             Document d = document(5)) {
+            try {
+                spooler.submit(Arrays.asList(d)).get();
+                fail("expected the device failure");
+            } catch (ExecutionException e) {
+                assertSame(fault, e.getCause());
+            }
+            spooler.submit(Arrays.asList(d)).get();
+            assertEquals(Arrays.asList(5), device.calls.get(1));
+        }
+        assertAllPagesReturned();
+    }
+
+    @Test
+    public void printWaitsForTheDeviceAndRethrowsItsFailure() throws Exception {
+        IllegalStateException jam = new IllegalStateException("paper jam");
+        Printer failing = d -> {
+            throw jam;
+        };
+        try (PrintSpooler spooler = new PrintSpooler(failing, 100, 1);
+             Document d = document(7)) {
+            try {
+                spooler.Print(d);
+                fail("expected the device failure");
+            } catch (IllegalStateException e) {
+                assertSame(jam, e);
+            }
+            try {
+                spooler.submit(Arrays.asList(d)).get();
+                fail("expected the device failure");
+            } catch (ExecutionException e) {
+                assertSame(jam, e.getCause());
+            }
+        }
+        assertAllPagesReturned(); // the shares of failed jobs are closed too
+    }
+
+    @Test
+    public void printReturnsOnceTheDocumentIsPrinted() throws Exception {
+        RecordingPrinter device = new RecordingPrinter();
+        try (PrintSpooler spooler = new PrintSpooler(device, 100, 1);
+             Document d = document(42)) {
+            spooler.Print(d);
+            assertEquals(Arrays.asList(Arrays.asList(42)), device.calls);
+        }
+    }
+
+    @Test
+    public void closedSpoolersRejectJobsWithoutHoldingTheirPages() {
+        PrintSpooler spooler = new PrintSpooler(new RecordingPrinter(), 100, 1);
+        spooler.close();
+        try (Document d = document(1)) {
+            spooler.submit(Arrays.asList(d));
+            fail("expected the closed spooler to refuse the job");
+        } catch (IllegalStateException expected) {
+            // the job's shares are given back
+        }
+        assertAllPagesReturned();
+    }
+}
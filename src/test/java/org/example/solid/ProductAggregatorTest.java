@@ -0,0 +1,76 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProductAggregatorTest {
+    private static List<Product> products(int count) {
+        Random random = new Random(7);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            products.add(new Product("Product " + i,
+                    random.nextInt(10) == 0 ? null : colors[random.nextInt(colors.length)],
+                    random.nextInt(10) == 0 ? null : sizes[random.nextInt(sizes.length)]));
+        return products;
+    }
+
+    private static void assertSameCounts(ProductHistogram expected, ProductHistogram actual) {
+        assertEquals(expected.total(), actual.total());
+        for (Color color : Color.values())
+            for (Size size : Size.values())
+                assertEquals(expected.count(color, size), actual.count(color, size));
+        assertEquals(expected.countByColor(null), actual.countByColor(null));
+        assertEquals(expected.countBySize(null), actual.countBySize(null));
+    }
+
+    // a table that fails the test when a row is materialised
+    private static ProductTable columnsOnly(List<Product> products) {
+        ProductTable table = new ProductTable() {
+            @Override
+            public Product get(int index) {
+                fail("row " + index + " was materialised");
+                return null;
+            }
+        };
+        table.addAll(products);
+        return table;
+    }
+
+    @Test
+    public void countsWithoutASpecificationReadOnlyTheColumns() {
+        List<Product> products = products(10_000);
+        assertSameCounts(ProductAggregator.countBy(products), ProductAggregator.countBy(columnsOnly(products)));
+        assertEquals(0, ProductAggregator.countBy(new ProductTable()).total());
+    }
+
+    @Test
+    public void parallelCountsOfATableStayInItsColumns() {
+        List<Product> products = products(100_000);
+        // leaves have to count specifications over the columns in place
+        ProductTable table = columnsOnly(products);
+        Specification<Product> notSmall = new NotSpecification<>(new SizeSpecification(Size.SMALL));
+        Specification<Product> green = new ColorSpecification(Color.GREEN);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameCounts(ProductAggregator.countBy(products, notSmall),
+                    ProductAggregator.countByParallel(table, notSmall, pool));
+            assertSameCounts(ProductAggregator.countBy(products, green),
+                    ProductAggregator.countByParallel(table, green, pool));
+            assertSameCounts(ProductAggregator.countBy(products, notSmall),
+                    ProductAggregator.countByParallel(products, notSmall, pool));
+            assertSameCounts(ProductAggregator.countBy(products),
+                    ProductAggregator.countByParallel(ProductTable.of(products), p -> true, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
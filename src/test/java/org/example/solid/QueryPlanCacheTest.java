@@ -0,0 +1,100 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class QueryPlanCacheTest {
+    private static final String[] QUERIES = {
+            "color=GREEN and size=LARGE",
+            "color in (RED, BLUE) or size = SMALL",
+            "not (color != BLUE or size = SMALL)",
+            "size not in (LARGE)",
+            "color = GREEN",
+    };
+
+    private final List<Product> products = new ArrayList<>(Arrays.asList(
+            new Product("Apple", Color.GREEN, Size.SMALL),
+            new Product("Ghost", null, Size.LARGE),
+            new Product("Tree", Color.GREEN, Size.LARGE),
+            new Product("Tomato", Color.RED, null),
+            new Product("House", Color.BLUE, Size.LARGE)));
+
+    private static List<String> names(Filter<Product> filter, List<Product> items, Specification<Product> spec) {
+        return filter.filter(items, spec).map(p -> p.name).collect(Collectors.toList());
+    }
+
+    @Test
+    public void cachedPlansAreAnsweredFromTheBitmapIndex() {
+        QueryPlanCache cache = new QueryPlanCache(16);
+        BitmapIndexFilter index = new BitmapIndexFilter(products);
+        assertNotNull(index.evaluate(cache.get("color=GREEN and size=LARGE")));
+        for (String query : QUERIES) {
+            Specification<Product> plan = cache.get(query);
+            assertNotNull(query, index.evaluate(plan));
+            assertEquals(query, names(new BetterFilter(), products, ProductQueryParser.parse(query)),
+                    names(index, products, plan));
+        }
+    }
+
+    @Test
+    public void repeatedQueriesAreHitsWhateverTheirSpelling() {
+        QueryPlanCache cache = new QueryPlanCache(16);
+        Specification<Product> plan = cache.get("color=GREEN and size=LARGE");
+        assertSame(plan, cache.get("color = GREEN and size = LARGE"));
+        assertSame(plan, cache.get("COLOR = green AND size = large"));
+        cache.get("color = BLUE");
+        cache.get("color = BLUE");
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertNotSame(plan, cache.get("color=GREEN and size=LARGE"));
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void theLeastRecentlyUsedPlanIsEvictedAtCapacity() {
+        QueryPlanCache cache = new QueryPlanCache(2);
+        Specification<Product> green = cache.get("color = GREEN");
+        Specification<Product> blue = cache.get("color = BLUE");
+        assertSame(green, cache.get("color = GREEN")); // blue is now the least recently used
+        cache.get("color = RED");
+        assertEquals(2, cache.size());
+
+        assertSame(green, cache.get("color = GREEN"));
+        assertEquals(2, cache.getHits());
+        assertNotSame(blue, cache.get("color = BLUE"));
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cachedPlansMatchLikeAScanOnTheColumnarFilter() {
+        QueryPlanCache cache = new QueryPlanCache(16);
+        ProductTable table = ProductTable.of(products);
+        for (String query : QUERIES)
+            assertEquals(query, names(new BetterFilter(), products, ProductQueryParser.parse(query)),
+                    names(new ColumnarFilter(), table, cache.get(query)));
+    }
+
+    @Test
+    public void conjunctionsWithUnindexedTermsAreNarrowedFromTheIndex() {
+        Specification<Product> named = p -> p.name.startsWith("T");
+        Specification<Product> plan = SpecificationCompiler.compile(
+                new AndSpecification<>(named, new ColorSpecification(Color.GREEN)));
+        BitmapIndexFilter index = new BitmapIndexFilter(products);
+        assertNotNull(index.evaluate(plan));
+        assertEquals(Arrays.asList("Tree"), names(index, products, plan));
+        assertEquals(Arrays.asList("Tree"), names(new ColumnarFilter(), ProductTable.of(products), plan));
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryTest {
+    private static List<Product> products(int count) {
+        Random random = new Random(7);
+        Color[] colors = Color.values();
+        Size[] sizes = Size.values();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            products.add(new Product("Product " + random.nextInt(count / 4),
+                    colors[random.nextInt(colors.length)], sizes[random.nextInt(sizes.length)]));
+        return products;
+    }
+
+    private static List<Product> sorted(List<Product> products, Specification<Product> spec,
+                                        Comparator<Product> order) {
+        return products.stream().filter(spec::isSatisfied).sorted(order).collect(Collectors.toList());
+    }
+
+    private static List<Product> page(List<Product> products, Query<Product> query) {
+        return new BetterFilter().query(products, query).collect(Collectors.toList());
+    }
+
+    @Test
+    public void pagesOverANonUniqueOrderNeitherOverlapNorSkip() {
+        List<Product> products = products(1000);
+        Specification<Product> spec = new NotSpecification<>(new ColorSpecification(Color.RED));
+        Comparator<Product> bySize = Comparator.comparing((Product p) -> p.size);
+        List<Product> expected = sorted(products, spec, bySize);
+
+        List<Product> paged = new ArrayList<>();
+        for (int offset = 0; offset < expected.size(); offset += 7) {
+            List<Product> page = page(products, Query.where(spec).orderBy(bySize).offset(offset).limit(7));
+            assertTrue(page.size() <= 7);
+            paged.addAll(page);
+        }
+        // the same objects in the same order as the stable sort, so every match exactly once
+        assertEquals(expected.size(), paged.size());
+        for (int i = 0; i < paged.size(); i++)
+            assertTrue("position " + i, expected.get(i) == paged.get(i));
+    }
+
+    @Test
+    public void topKMatchesTheFullSort() {
+        List<Product> products = products(2000);
+        Specification<Product> spec = new SizeSpecification(Size.LARGE);
+        Comparator<Product> order = Comparator.comparing((Product p) -> p.name).reversed()
+                .thenComparing(p -> p.color);
+        List<Product> expected = sorted(products, spec, order);
+        int[][] windows = {{0, 1}, {0, 10}, {3, 10}, {50, 25}, {expected.size() - 5, 10},
+                {expected.size() + 1, 10}, {0, Query.UNLIMITED}, {10, Query.UNLIMITED}};
+        for (int[] window : windows) {
+            List<Product> page = page(products, Query.where(spec).orderBy(order).offset(window[0]).limit(window[1]));
+            int from = Math.min(window[0], expected.size());
+            int to = (int) Math.min(expected.size(), (long) window[0] + window[1]);
+            List<Product> wanted = expected.subList(from, to);
+            assertEquals(wanted.size(), page.size());
+            for (int i = 0; i < page.size(); i++)
+                assertTrue(window[0] + "+" + window[1] + " at " + i, wanted.get(i) == page.get(i));
+        }
+    }
+
+    @Test
+    public void unorderedPagesStopReadingOnceFull() {
+        List<Product> products = products(1000);
+        int[] read = new int[1];
+        Iterator<Product> counting = new Iterator<Product>() {
+            private final Iterator<Product> it = products.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                read[0]++;
+                return it.next();
+            }
+        };
+        List<Product> page = Query.where((Product p) -> true).offset(20).limit(10).collect(counting);
+        assertEquals(products.subList(20, 30), page);
+        assertEquals(30, read[0]);
+    }
+}
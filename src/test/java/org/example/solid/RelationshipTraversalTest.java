@@ -0,0 +1,97 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RelationshipTraversalTest {
+    private static List<String> names(List<Person> persons) {
+        return persons.stream().map(p -> p.name).collect(Collectors.toList());
+    }
+
+    private static void add(Relationships relationships, String parent, String... children) {
+        for (String child : children)
+            relationships.addParentAndChild(new Person(parent), new Person(child));
+    }
+
+    private static Relationships family() {
+        Relationships relationships = new Relationships();
+        add(relationships, "Grandpa", "Dad", "Uncle");
+        add(relationships, "Dad", "Me", "Sister");
+        add(relationships, "Mom", "Me", "Sister", "Half brother");
+        add(relationships, "Uncle", "Cousin");
+        add(relationships, "Me", "Kid");
+        return relationships;
+    }
+
+    @Test
+    public void descendantsComeGenerationByGeneration() {
+        RelationshipTraversal traversal = new RelationshipTraversal(family());
+        assertEquals(List.of("Dad", "Uncle", "Me", "Sister", "Cousin", "Kid"),
+                names(traversal.descendantsOf("Grandpa", 3)));
+        assertEquals(List.of("Dad", "Uncle"), names(traversal.descendantsOf("Grandpa", 1)));
+        assertEquals(List.of(), names(traversal.descendantsOf("Grandpa", 0)));
+        assertEquals(List.of(), names(traversal.descendantsOf("Stranger", 5)));
+    }
+
+    @Test
+    public void ancestorsAreVisitedOnceEach() {
+        RelationshipTraversal traversal = new RelationshipTraversal(family());
+        assertEquals(List.of("Me", "Dad", "Mom", "Grandpa"), names(traversal.ancestorsOf("Kid", 10)));
+        assertEquals(List.of("Dad", "Mom", "Grandpa"), names(traversal.ancestorsOf("Sister", 10)));
+        try {
+            traversal.ancestorsOf("Kid", -1);
+            fail("a negative depth should be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void siblingsShareAtLeastOneParent() {
+        RelationshipTraversal traversal = new RelationshipTraversal(family());
+        assertEquals(List.of("Sister", "Half brother"), names(traversal.siblingsOf("Me")));
+        assertEquals(List.of("Me", "Sister"), names(traversal.siblingsOf("Half brother")));
+        assertEquals(List.of(), names(traversal.siblingsOf("Cousin")));
+    }
+
+    @Test(timeout = 10_000)
+    public void cyclesEndOnceEverybodyWasVisited() {
+        Relationships relationships = new Relationships();
+        add(relationships, "A", "B");
+        add(relationships, "B", "C");
+        add(relationships, "C", "A", "D");
+        RelationshipTraversal traversal = new RelationshipTraversal(relationships);
+        assertEquals(List.of("B", "C", "D"), names(traversal.descendantsOf("A", Integer.MAX_VALUE)));
+        assertEquals(List.of("C", "B", "A"), names(traversal.ancestorsOf("D", Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void parallelExpansionFindsTheSameAsSequential() {
+        Relationships relationships = new Relationships();
+        for (int a = 0; a < 20; a++) {
+            add(relationships, "root", "g1-" + a);
+            for (int b = 0; b < 20; b++) {
+                add(relationships, "g1-" + a, "g2-" + a + "-" + b);
+                // children shared between branches, so the visited set matters in parallel too
+                add(relationships, "g2-" + a + "-" + b, "g3-" + b, "g3-" + (a * 20 + b));
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RelationshipTraversal sequential = new RelationshipTraversal(relationships);
+            RelationshipTraversal parallel = new RelationshipTraversal(relationships, pool, 1);
+            for (int depth = 0; depth <= 4; depth++)
+                assertEquals(names(sequential.descendantsOf("root", depth)),
+                        names(parallel.descendantsOf("root", depth)));
+            assertEquals(names(sequential.ancestorsOf("g3-5", 4)), names(parallel.ancestorsOf("g3-5", 4)));
+            assertEquals(20 + 400 + 400, parallel.descendantsOf("root", 4).size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
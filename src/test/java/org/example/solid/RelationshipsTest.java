@@ -0,0 +1,74 @@
+package org.example.solid;
+
+import org.javatuples.Triplet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RelationshipsTest {
+    // what the lookups did before the index: a scan of all relations
+    private static List<Person> scan(Relationships relationships, String name, Relationship relationship) {
+        return relationships.getRelations().stream()
+                .filter(r -> r.getValue0().name.equals(name) && r.getValue1() == relationship)
+                .map(Triplet::getValue2)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void indexedLookupsMatchAScanOfTheRelations() {
+        Relationships relationships = new Relationships();
+        Random random = new Random(3);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+            names.add("Person " + i);
+        for (int i = 0; i < 3000; i++) // a new Person object every time, also for names seen before
+            relationships.addParentAndChild(new Person(names.get(random.nextInt(names.size()))),
+                    new Person(names.get(random.nextInt(names.size()))));
+        names.add("Nobody");
+
+        for (String name : names) {
+            assertEquals(name, scan(relationships, name, Relationship.PARENT), relationships.findAllChildrenOf(name));
+            assertEquals(name, scan(relationships, name, Relationship.CHILD), relationships.findAllParentsOf(name));
+        }
+    }
+
+    @Test
+    public void relationsCanOnlyChangeThroughAddParentAndChild() {
+        Relationships relationships = new Relationships();
+        Person john = new Person("John");
+        Person chris = new Person("Chris");
+        relationships.addParentAndChild(john, chris);
+        List<Triplet<Person, Relationship, Person>> relations = relationships.getRelations();
+        try {
+            relations.add(new Triplet<>(john, Relationship.PARENT, new Person("Matt")));
+            fail("the relations should be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            relations.clear();
+            fail("the relations should be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals(List.of(chris), relationships.findAllChildrenOf("John"));
+
+        // the view follows later additions
+        relationships.addParentAndChild(john, new Person("Matt"));
+        assertEquals(4, relations.size());
+    }
+
+    @Test
+    public void returnedListsBelongToTheCaller() {
+        Relationships relationships = new Relationships();
+        relationships.addParentAndChild(new Person("John"), new Person("Chris"));
+        relationships.findAllChildrenOf("John").clear();
+        relationships.findAllChildrenOf("Nobody").add(new Person("Ghost"));
+        assertEquals(1, relationships.findAllChildrenOf("John").size());
+        assertEquals(0, relationships.findAllChildrenOf("Nobody").size());
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.solid;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteJournalLoaderTest {
+    private final HttpServer server;
+    private final List<String> expected = new ArrayList<>();
+    private byte[] content;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private volatile boolean unavailable; // ranges other than the size probe get 503
+
+    public RemoteJournalLoaderTest() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/ranged", exchange -> serve(exchange, true));
+        server.createContext("/plain", exchange -> serve(exchange, false));
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdown();
+    }
+
+    // several MB, so the loader fetches it in more than one range; some lines end with \r\n,
+    // some entries go on over a second line, and the file does not end with a line break
+    private void journal(int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 1; i <= count; i++) {
+            String entry = i + ": " + (i % 7 == 0 ? "Lieber Tagebuch, heute war schön ☀" : "Dear diary, entry " + i);
+            String line = entry;
+            if (i % 1000 == 0) {
+                line = entry + "\nand it went on";
+                entry = entry + System.lineSeparator() + "and it went on";
+            }
+            expected.add(entry);
+            String separator = i == count ? "" : i % 3 == 0 ? "\r\n" : "\n";
+            byte[] bytes = (line + separator).getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        content = out.toByteArray();
+    }
+
+    private Journal load(String path, int parts, int retries) throws IOException {
+        Journal journal = new Journal();
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + path + "/journal.txt");
+        new RemoteJournalLoader(parts, retries).load(journal, url);
+        return journal;
+    }
+
+    @Test
+    public void rangesAreStitchedBackInFileOrder() throws IOException {
+        journal(150_000);
+        assertTrue(content.length > 4 << 20);
+        Journal journal = load("/ranged", 4, 3);
+        assertEquals(expected, journal.getEntries());
+        assertTrue(rangeRequests.get() >= 5); // the probe plus four ranges
+    }
+
+    @Test
+    public void brokenConnectionsAreResumed() throws IOException {
+        journal(150_000);
+        failuresLeft.set(3);
+        Journal journal = load("/ranged", 4, 3);
+        assertEquals(expected, journal.getEntries());
+        assertEquals(0, failuresLeft.get());
+    }
+
+    @Test
+    public void serversWithoutRangesSendTheWholeFile() throws IOException {
+        journal(10_000);
+        Journal journal = load("/plain", 4, 3);
+        assertEquals(expected, journal.getEntries());
+        journal.addEntry("after loading");
+        assertTrue(JournalIndex.number(journal.getEntries().get(10_000)) > 10_000);
+    }
+
+    @Test
+    public void emptyFilesGiveAnEmptyJournal() throws IOException {
+        content = new byte[0];
+        assertTrue(load("/ranged", 4, 3).getEntries().isEmpty());
+    }
+
+    @Test
+    public void aRangeThatKeepsFailingWithoutProgressFailsTheLoad() {
+        journal(150_000);
+        unavailable = true;
+        try {
+            load("/ranged", 2, 1);
+            fail("expected the load to fail");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("503"));
+        }
+    }
+
+    // /ranged answers range requests and breaks connections halfway while failuresLeft is positive;
+    // /plain always sends the whole file
+    private void serve(HttpExchange exchange, boolean ranges) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0, end = content.length;
+        if (ranges && range != null && range.startsWith("bytes=")) {
+            rangeRequests.incrementAndGet();
+            String[] bounds = range.substring(6).split("-");
+            start = Integer.parseInt(bounds[0]);
+            if (unavailable && !range.equals("bytes=0-0")) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            if (start >= content.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            end = Math.min(content.length, Integer.parseInt(bounds[1]) + 1);
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (end - 1) + "/" + content.length);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_PARTIAL, end - start);
+        } else {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length == 0 ? -1 : content.length);
+        }
+        int stopAt = end;
+        if (ranges && end - start > 1 && failuresLeft.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0)
+            stopAt = start + (end - start) / 2;
+        OutputStream out = exchange.getResponseBody();
+        out.write(content, start, stopAt - start);
+        out.flush();
+        if (stopAt < end) // the server drops the connection of a handler that fails
+            throw new IOException("Simulated connection loss");
+        out.close();
+    }
+}
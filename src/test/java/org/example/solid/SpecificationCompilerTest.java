@@ -0,0 +1,107 @@
+package org.example.solid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SpecificationCompilerTest {
+    // every combination of color and size, nulls included, under a few names
+    private static List<Product> everyProduct() {
+        List<Product> products = new ArrayList<>();
+        List<Color> colors = new ArrayList<>(java.util.Arrays.asList(Color.values()));
+        colors.add(null);
+        List<Size> sizes = new ArrayList<>(java.util.Arrays.asList(Size.values()));
+        sizes.add(null);
+        for (int n = 0; n < 3; n++)
+            for (Color color : colors)
+                for (Size size : sizes)
+                    products.add(new Product("p" + n, color, size));
+        return products;
+    }
+
+    private static void assertEquivalent(Specification<Product> spec, Specification<Product> compiled) {
+        for (Product p : everyProduct())
+            assertEquals(p.name + " " + p.color + " " + p.size, spec.isSatisfied(p), compiled.isSatisfied(p));
+    }
+
+    @Test
+    public void colorAndSizeTreesBecomeMasks() {
+        Specification<Product> spec = new AndSpecification<>(
+                new NotSpecification<>(new ColorSpecification(Color.RED)),
+                new OrSpecification<>(new SizeSpecification(Size.LARGE), new SizeSpecification(null)));
+        Specification<Product> compiled = SpecificationCompiler.compile(spec);
+        assertTrue(compiled instanceof ProductMask);
+        assertEquivalent(spec, compiled);
+    }
+
+    @Test
+    public void otherTermsKeepAConjunctionWithTheMaskFirst() {
+        Specification<Product> spec = new AndSpecification<>(
+                new AndSpecification<>(p -> p.name.equals("p1"), new ColorSpecification(Color.GREEN)),
+                new NotSpecification<>(new NotSpecification<>(new SizeSpecification(Size.SMALL))));
+        Specification<Product> compiled = SpecificationCompiler.compile(spec);
+        assertTrue(compiled instanceof SpecificationCompiler.Conjunction);
+        List<Specification<Product>> terms = ((SpecificationCompiler.Conjunction<Product>) compiled).getTerms();
+        assertEquals(2, terms.size());
+        assertTrue(terms.get(0) instanceof ProductMask);
+        assertEquivalent(spec, compiled);
+    }
+
+    @Test
+    public void disjunctionsMergeTheirMaskableTerms() {
+        Specification<Product> spec = new OrSpecification<>(new ColorSpecification(Color.BLUE),
+                new OrSpecification<>(p -> p.name.equals("p2"), new SizeSpecification(Size.YUGE)));
+        Specification<Product> compiled = SpecificationCompiler.compile(spec);
+        assertEquals(2, ((SpecificationCompiler.Disjunction<Product>) compiled).getTerms().size());
+        assertEquivalent(spec, compiled);
+    }
+
+    @Test
+    public void conjunctionIsCorrectWhileReorderingUnderConcurrentUse() {
+        PureSpecification<Product> rarelyRejects = p -> !p.name.equals("p2");
+        PureSpecification<Product> oftenRejects = p -> p.name.equals("p0");
+        Specification<Product> spec = new AndSpecification<>(rarelyRejects,
+                new AndSpecification<>(oftenRejects, p -> p.color != Color.RED));
+        Specification<Product> compiled = SpecificationCompiler.compile(spec);
+        List<Product> products = everyProduct();
+        long expected = products.stream().filter(spec::isSatisfied).count();
+        List<Long> counts = IntStream.range(0, 2000).parallel()
+                .mapToObj(i -> products.stream().filter(compiled::isSatisfied).count())
+                .collect(Collectors.toList());
+        for (long count : counts)
+            assertEquals(expected, count);
+        List<Specification<Product>> terms = ((SpecificationCompiler.Conjunction<Product>) compiled).getTerms();
+        assertSame(oftenRejects, terms.get(0));
+        assertSame(rarelyRejects, terms.get(1));
+    }
+
+    @Test
+    public void otherTermsRunInDeclaredOrderAfterAFailedGuard() {
+        AtomicInteger calls = new AtomicInteger();
+        Specification<Product> spec = new AndSpecification<>(
+                new AndSpecification<>(p -> p.name != null, p -> p.name.startsWith("p")),
+                new AndSpecification<>(p -> calls.incrementAndGet() > 0, new ColorSpecification(Color.GREEN)));
+        Specification<Product> compiled = SpecificationCompiler.compile(spec);
+        List<Product> products = everyProduct();
+        for (Product p : everyProduct())
+            products.add(new Product(null, p.color, p.size));
+        int rounds = SpecificationCompiler.SAMPLE_RATE * SpecificationCompiler.REORDER_INTERVAL;
+        long count = 0;
+        for (int r = 0; r < rounds; r++)
+            for (Product p : products)
+                if (compiled.isSatisfied(p))
+                    count++;
+        // the mask runs first, the counting term only after the guard accepted the name
+        long greenAndNamed = products.stream().filter(p -> p.name != null && p.color == Color.GREEN).count();
+        assertEquals(rounds * greenAndNamed, calls.get());
+        assertEquals(rounds * products.stream().filter(spec::isSatisfied).count(), count);
+    }
+}